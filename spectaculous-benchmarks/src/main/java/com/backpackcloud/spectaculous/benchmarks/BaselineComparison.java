@@ -0,0 +1,123 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares the results of a benchmark run against a baseline, both written by
+ * JMH in the CSV format ({@code -rf csv}). Both the scores and the normalized
+ * allocation rates ({@code -prof gc}) are compared, and the process exits with
+ * a non-zero status if any of them regressed more than the tolerance.
+ * <p>
+ * Usage: {@code BaselineComparison <baseline.csv> <results.csv> [tolerance]},
+ * where the tolerance is a fraction of the baseline and defaults to 0.2.
+ */
+public final class BaselineComparison {
+
+  private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+  private BaselineComparison() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: BaselineComparison <baseline.csv> <results.csv> [tolerance]");
+      System.exit(2);
+    }
+    double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.2;
+    Map<String, Double> baseline = read(args[0]);
+    Map<String, Double> results = read(args[1]);
+
+    List<String> regressions = new ArrayList<>();
+    for (Map.Entry<String, Double> entry : results.entrySet()) {
+      Double expected = baseline.get(entry.getKey());
+      if (expected == null) {
+        System.out.printf(Locale.ROOT, "%-90s %12.3f   (no baseline)%n", entry.getKey(), entry.getValue());
+        continue;
+      }
+      double actual = entry.getValue();
+      // allocations of a few bytes are noise, like the ones of a blackhole
+      double limit = Math.max(expected * (1 + tolerance), entry.getKey().endsWith(ALLOCATION) ? expected + 8 : 0);
+      boolean regressed = actual > limit;
+      System.out.printf(Locale.ROOT, "%-90s %12.3f %12.3f %s%n",
+          entry.getKey(), expected, actual, regressed ? "REGRESSED" : "");
+      if (regressed) {
+        regressions.add(entry.getKey());
+      }
+    }
+    if (!regressions.isEmpty()) {
+      System.out.printf(Locale.ROOT, "%d of %d results regressed more than %.0f%%%n",
+          regressions.size(), results.size(), tolerance * 100);
+      System.exit(1);
+    }
+  }
+
+  private static Map<String, Double> read(String file) throws IOException {
+    Map<String, Double> scores = new LinkedHashMap<>();
+    List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+    for (String line : lines.subList(1, lines.size())) {
+      List<String> columns = columns(line);
+      String benchmark = columns.get(0);
+      if (benchmark.contains(":") && !benchmark.endsWith(ALLOCATION)) {
+        continue;
+      }
+      StringBuilder key = new StringBuilder(benchmark);
+      for (String parameter : columns.subList(7, columns.size())) {
+        key.append(' ').append(parameter);
+      }
+      scores.put(key.toString(), Double.parseDouble(columns.get(4)));
+    }
+    return scores;
+  }
+
+  private static List<String> columns(String line) {
+    List<String> columns = new ArrayList<>();
+    StringBuilder column = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '"') {
+        quoted = !quoted;
+      } else if (c == ',' && !quoted) {
+        columns.add(column.toString());
+        column.setLength(0);
+      } else {
+        column.append(c);
+      }
+    }
+    columns.add(column.toString());
+    return columns;
+  }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous.benchmarks;
+
+import com.backpackcloud.spectaculous.Spec;
+import com.backpackcloud.spectaculous.Spectacle;
+import com.backpackcloud.spectaculous.SpectacularException;
+import org.hamcrest.Matcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Measures the cost of each part of a spec chain, from describing the spec to
+ * checking statements. The exceptions and matchers the statements use are
+ * built once, so the benchmarks measure only what the library adds. Run with
+ * {@code -prof gc} to see the allocations of each part.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChainBenchmark {
+
+  private static final IllegalStateException ERROR = new IllegalStateException("expected");
+
+  private final String target = "spectaculous";
+  private final Matcher<Integer> length = equalTo(12);
+
+  @Benchmark
+  public Object describe() {
+    return Spec.describe(String.class);
+  }
+
+  @Benchmark
+  public Object given() {
+    return Spec.describe(String.class)
+        .given(target);
+  }
+
+  @Benchmark
+  public Object because() {
+    return Spec.describe(String.class)
+        .given(target)
+        .because("The length should match");
+  }
+
+  @Benchmark
+  public Object expectSuccess() {
+    return Spec.describe(String.class)
+        .given(target)
+        .because("The length should match")
+        .expect(12).from(String::length);
+  }
+
+  @Benchmark
+  public Object expectFailure() {
+    try {
+      return Spec.describe(String.class)
+          .stackless()
+          .given(target)
+          .because("The length should match")
+          .expect(0).from(String::length);
+    } catch (SpectacularException e) {
+      return e;
+    }
+  }
+
+  @Benchmark
+  public Object expectMatcher() {
+    return Spec.describe(String.class)
+        .given(target)
+        .because("The length should match")
+        .expect(length).from(String::length);
+  }
+
+  @Benchmark
+  public Object thenWillThrow() {
+    return Spec.describe(String.class)
+        .given(target)
+        .because("It should throw")
+        .then(s -> {
+          throw ERROR;
+        }).willThrow(IllegalStateException.class);
+  }
+
+  @Benchmark
+  public Object waitFor() {
+    Spectacle<String> spec = Spec.describe(String.class)
+        .given(target);
+    return spec.waitFor(s -> {
+    });
+  }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous.benchmarks;
+
+import com.backpackcloud.spectaculous.CompiledSpec;
+import com.backpackcloud.spectaculous.Spec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares evaluating invariants with a CompiledSpec against building the same
+ * chain for every target. Run with {@code -prof gc} to see the allocations: the
+ * compiled spec should not allocate anything.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledSpecBenchmark {
+
+  private final String target = "spectaculous";
+
+  private final CompiledSpec<String> compiled = Spec.compile(String.class, spec -> spec
+      .because("The target should not be empty")
+      .expect(false).from(String::isEmpty)
+      .because("The target should be in lower case")
+      .expect(true).from(s -> Character.isLowerCase(s.charAt(0)))
+      .then(String::trim).willSucceed());
+
+  @Benchmark
+  public Object compiled() {
+    compiled.evaluate(target);
+    return compiled;
+  }
+
+  @Benchmark
+  public boolean compiledTest() {
+    return compiled.test(target);
+  }
+
+  @Benchmark
+  public Object chain() {
+    return Spec.describe(String.class)
+        .given(target)
+        .because("The target should not be empty")
+        .expect(false).from(String::isEmpty)
+        .because("The target should be in lower case")
+        .expect(true).from(s -> Character.isLowerCase(s.charAt(0)))
+        .then(String::trim).willSucceed();
+  }
+
+}
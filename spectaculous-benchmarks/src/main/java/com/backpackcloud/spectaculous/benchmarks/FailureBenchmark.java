@@ -0,0 +1,106 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous.benchmarks;
+
+import com.backpackcloud.spectaculous.Spec;
+import com.backpackcloud.spectaculous.SpectacularException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the failing path of a spec, comparing exceptions that
+ * capture the stack trace with the stackless ones. None of the benchmarks
+ * formats the message, except for the ones that explicitly ask for it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FailureBenchmark {
+
+  private final String target = "spectaculous";
+
+  @Benchmark
+  public Object failure() {
+    try {
+      return Spec.describe(String.class)
+          .given(target)
+          .because("The length should match")
+          .expect(0).from(String::length);
+    } catch (SpectacularException e) {
+      return e;
+    }
+  }
+
+  @Benchmark
+  public Object stacklessFailure() {
+    try {
+      return Spec.describe(String.class)
+          .stackless()
+          .given(target)
+          .because("The length should match")
+          .expect(0).from(String::length);
+    } catch (SpectacularException e) {
+      return e;
+    }
+  }
+
+  @Benchmark
+  public Object failureMessage() {
+    try {
+      return Spec.describe(String.class)
+          .given(target)
+          .because("The length should match")
+          .expect(0).from(String::length);
+    } catch (SpectacularException e) {
+      return e.getMessage();
+    }
+  }
+
+  @Benchmark
+  public Object stacklessFailureMessage() {
+    try {
+      return Spec.describe(String.class)
+          .stackless()
+          .given(target)
+          .because("The length should match")
+          .expect(0).from(String::length);
+    } catch (SpectacularException e) {
+      return e.getMessage();
+    }
+  }
+
+}
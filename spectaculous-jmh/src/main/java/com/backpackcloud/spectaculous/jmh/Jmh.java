@@ -0,0 +1,231 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous.jmh;
+
+import com.backpackcloud.spectaculous.Measure;
+import com.backpackcloud.spectaculous.Operation;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * A measure that runs the operation of a statement through the JMH runner and
+ * compares its score against a stored baseline.
+ * <p>
+ * The target object produced by the spec becomes the benchmark state and the
+ * operation becomes the benchmark method. Since both live in the JVM running the
+ * spec, the benchmark runs in-process (without forks).
+ * <p>
+ * The first run of a benchmark records its score in the baseline file, which is
+ * meant to be committed along with the specs. The following runs fail the spec
+ * if the score regresses more than the tolerance.
+ * Set the system property {@value #UPDATE_PROPERTY} to {@code true} to record
+ * the current scores as the new baseline.
+ */
+public final class Jmh implements Measure {
+
+  /**
+   * System property that makes the benchmarks record their scores as the new baseline.
+   */
+  public static final String UPDATE_PROPERTY = "spectaculous.jmh.update";
+
+  private static final Object LOCK = new Object();
+
+  private final String name;
+  private final Mode mode;
+  private final TimeUnit timeUnit;
+  private final int warmupIterations;
+  private final int measurementIterations;
+  private final TimeValue iterationTime;
+  private final double tolerance;
+  private final Path baseline;
+
+  private Jmh(String name, Mode mode, TimeUnit timeUnit, int warmupIterations, int measurementIterations,
+              TimeValue iterationTime, double tolerance, Path baseline) {
+    if (mode == Mode.All || mode == Mode.SingleShotTime) {
+      throw new IllegalArgumentException("Unsupported mode: " + mode);
+    }
+    this.name = name;
+    this.mode = mode;
+    this.timeUnit = timeUnit;
+    this.warmupIterations = warmupIterations;
+    this.measurementIterations = measurementIterations;
+    this.iterationTime = iterationTime;
+    this.tolerance = tolerance;
+    this.baseline = baseline;
+  }
+
+  /**
+   * Sets the benchmark mode and the unit of its score. Defaults to the average
+   * time in nanoseconds.
+   *
+   * @param mode     the benchmark mode
+   * @param timeUnit the unit of the score
+   * @return a new Jmh that uses the given mode
+   */
+  public Jmh mode(Mode mode, TimeUnit timeUnit) {
+    return new Jmh(name, mode, timeUnit, warmupIterations, measurementIterations, iterationTime, tolerance, baseline);
+  }
+
+  /**
+   * Sets how many warmup and measurement iterations are done. Defaults to 3 and 5.
+   *
+   * @param warmup      the number of warmup iterations
+   * @param measurement the number of measurement iterations
+   * @return a new Jmh that uses the given iterations
+   */
+  public Jmh iterations(int warmup, int measurement) {
+    return new Jmh(name, mode, timeUnit, warmup, measurement, iterationTime, tolerance, baseline);
+  }
+
+  /**
+   * Sets how long each iteration takes. Defaults to 1 second.
+   *
+   * @param time the time of each iteration
+   * @param unit the unit of the time
+   * @return a new Jmh that uses the given iteration time
+   */
+  public Jmh iterationTime(long time, TimeUnit unit) {
+    return new Jmh(name, mode, timeUnit, warmupIterations, measurementIterations, new TimeValue(time, unit),
+        tolerance, baseline);
+  }
+
+  /**
+   * Sets how much the score can regress before failing the spec. Defaults to 0.1 (10%).
+   *
+   * @param tolerance the tolerated regression, as a fraction of the baseline score
+   * @return a new Jmh that uses the given tolerance
+   */
+  public Jmh tolerance(double tolerance) {
+    return new Jmh(name, mode, timeUnit, warmupIterations, measurementIterations, iterationTime, tolerance, baseline);
+  }
+
+  /**
+   * Sets the file that stores the baseline scores. Defaults to
+   * {@code src/test/resources/jmh-baseline.properties}.
+   *
+   * @param baseline the baseline file
+   * @return a new Jmh that uses the given baseline file
+   */
+  public Jmh baseline(Path baseline) {
+    return new Jmh(name, mode, timeUnit, warmupIterations, measurementIterations, iterationTime, tolerance, baseline);
+  }
+
+  @Override
+  public <T> Result measure(T target, Operation<? super T, ?> operation) throws Throwable {
+    String id = Registry.register(target, operation);
+    try {
+      Options options = new OptionsBuilder()
+          .include(Pattern.quote(SpecBenchmark.class.getName()) + ".*")
+          .param("statement", id)
+          .forks(0)
+          .threads(1)
+          .mode(mode)
+          .timeUnit(timeUnit)
+          .warmupIterations(warmupIterations)
+          .warmupTime(iterationTime)
+          .measurementIterations(measurementIterations)
+          .measurementTime(iterationTime)
+          .shouldFailOnError(true)
+          .verbosity(VerboseMode.SILENT)
+          .build();
+      RunResult run = new Runner(options).runSingle();
+      return compare(run.getPrimaryResult().getScore(), run.getPrimaryResult().getScoreUnit());
+    } finally {
+      Registry.remove(id);
+    }
+  }
+
+  private Result compare(double score, String unit) throws IOException {
+    synchronized (LOCK) {
+      Properties scores = load();
+      String stored = scores.getProperty(name);
+      if (stored == null || Boolean.getBoolean(UPDATE_PROPERTY)) {
+        scores.setProperty(name, String.valueOf(score));
+        store(scores);
+        return Result.of(true, String.format(Locale.ROOT, "%s: %.3f %s, recorded as baseline", name, score, unit));
+      }
+      double reference = Double.parseDouble(stored);
+      boolean regressed = mode == Mode.Throughput
+          ? score < reference * (1 - tolerance)
+          : score > reference * (1 + tolerance);
+      return Result.of(!regressed, String.format(Locale.ROOT, "%s: %.3f %s, baseline %.3f %s, tolerance %.0f%%",
+          name, score, unit, reference, unit, tolerance * 100));
+    }
+  }
+
+  private Properties load() throws IOException {
+    Properties scores = new Properties();
+    if (Files.exists(baseline)) {
+      try (Reader reader = Files.newBufferedReader(baseline, StandardCharsets.UTF_8)) {
+        scores.load(reader);
+      }
+    }
+    return scores;
+  }
+
+  private void store(Properties scores) throws IOException {
+    Path parent = baseline.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    try (Writer writer = Files.newBufferedWriter(baseline, StandardCharsets.UTF_8)) {
+      scores.store(writer, "Spectaculous JMH baseline");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "JMH benchmark " + name;
+  }
+
+  /**
+   * Creates a new Jmh measure.
+   *
+   * @param name the name of the benchmark, used as the key of its baseline score
+   * @return a new Jmh
+   */
+  public static Jmh benchmark(String name) {
+    return new Jmh(name, Mode.AverageTime, TimeUnit.NANOSECONDS, 3, 5, TimeValue.seconds(1), 0.1,
+        Paths.get("src", "test", "resources", "jmh-baseline.properties"));
+  }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous.jmh;
+
+import com.backpackcloud.spectaculous.Operation;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the targets and operations of the statements being benchmarked so the
+ * benchmark state can find them by id.
+ */
+final class Registry {
+
+  private static final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private static final AtomicLong ids = new AtomicLong();
+
+  private Registry() {
+
+  }
+
+  static <T> String register(T target, Operation<? super T, ?> operation) {
+    String id = String.valueOf(ids.incrementAndGet());
+    entries.put(id, new Entry(target, operation));
+    return id;
+  }
+
+  static Entry get(String id) {
+    Entry entry = entries.get(id);
+    if (entry == null) {
+      throw new IllegalStateException("No statement registered with id " + id
+          + ". Benchmarks of specs must run in the same JVM (forks = 0).");
+    }
+    return entry;
+  }
+
+  static void remove(String id) {
+    entries.remove(id);
+  }
+
+  static final class Entry {
+
+    private final Object target;
+    private final Operation<Object, ?> operation;
+
+    @SuppressWarnings("unchecked")
+    private <T> Entry(T target, Operation<? super T, ?> operation) {
+      this.target = target;
+      this.operation = (Operation<Object, ?>) operation;
+    }
+
+    Object run() throws Throwable {
+      return operation.execute(target);
+    }
+
+  }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous.jmh;
+
+import com.backpackcloud.spectaculous.Spec;
+import com.backpackcloud.spectaculous.SpectacularException;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Mode;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JmhTest {
+
+  @Test
+  public void testRegistry() throws Throwable {
+    Object target = new Object();
+    String id = Registry.register(target, o -> o);
+    String other = Registry.register("other", String::length);
+
+    assertSame(target, Registry.get(id).run());
+    assertEquals(5, Registry.get(other).run());
+
+    Registry.remove(id);
+    IllegalStateException e = assertThrows(IllegalStateException.class, () -> Registry.get(id));
+    assertTrue(e.getMessage().contains("forks = 0"));
+    assertEquals(5, Registry.get(other).run());
+    Registry.remove(other);
+  }
+
+  @Test
+  public void testBaseline() throws Throwable {
+    Path baseline = Files.createTempDirectory("spectaculous").resolve("jmh.properties");
+    Jmh jmh = Jmh.benchmark("concat")
+        .iterations(1, 1)
+        .iterationTime(100, TimeUnit.MILLISECONDS)
+        .tolerance(1000)
+        .baseline(baseline);
+
+    Spec.describe(String.class)
+        .given("spectaculous")
+        .expect(jmh).from(s -> s + s.length());
+
+    Properties scores = new Properties();
+    try (Reader reader = Files.newBufferedReader(baseline, StandardCharsets.UTF_8)) {
+      scores.load(reader);
+    }
+    assertNotNull(scores.getProperty("concat"));
+
+    Spec.describe(String.class)
+        .given("spectaculous")
+        .expect(jmh).from(s -> s + s.length());
+
+    Files.write(baseline, "concat=0.000001\n".getBytes(StandardCharsets.UTF_8));
+    SpectacularException e = assertThrows(SpectacularException.class, () -> Spec.describe(String.class)
+        .given("spectaculous")
+        .expect(jmh.tolerance(0.1)).from(s -> s + s.length()));
+    assertTrue(e.getMessage().contains("concat: "));
+    assertTrue(e.getMessage().contains("baseline 0.000 ns/op, tolerance 10%"));
+  }
+
+  @Test
+  public void testMode() {
+    assertThrows(IllegalArgumentException.class, () -> Jmh.benchmark("all").mode(Mode.All, TimeUnit.NANOSECONDS));
+  }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous.junit;
+
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.junit.platform.commons.support.HierarchyTraversalMode;
+import org.junit.platform.commons.support.ReflectionSupport;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.support.descriptor.AbstractTestDescriptor;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.engine.support.hierarchical.Node;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+/**
+ * Describes a class that has methods annotated with {@link Specification}.
+ */
+final class SpecClassDescriptor extends AbstractTestDescriptor implements Node<SpectaculousEngine.Context> {
+
+  static final String SEGMENT_TYPE = "class";
+
+  SpecClassDescriptor(UniqueId uniqueId, Class<?> type) {
+    super(uniqueId, type.getSimpleName(), ClassSource.from(type));
+  }
+
+  @Override
+  public Type getType() {
+    return Type.CONTAINER;
+  }
+
+  /**
+   * @param type the class
+   * @return {@code true} if the given class can be instantiated and has specification methods
+   */
+  static boolean isCandidate(Class<?> type) {
+    return !Modifier.isAbstract(type.getModifiers()) && !type.isLocalClass() && !type.isAnonymousClass()
+        && !specifications(type).isEmpty();
+  }
+
+  /**
+   * @param type the class
+   * @return the specification methods of the given class
+   */
+  static List<Method> specifications(Class<?> type) {
+    return ReflectionSupport.findMethods(type, SpecClassDescriptor::isSpecification, HierarchyTraversalMode.TOP_DOWN);
+  }
+
+  /**
+   * @param method the method
+   * @return {@code true} if the given method is a specification method
+   */
+  static boolean isSpecification(Method method) {
+    return AnnotationSupport.isAnnotated(method, Specification.class)
+        && method.getParameterCount() == 0
+        && !Modifier.isAbstract(method.getModifiers());
+  }
+
+}
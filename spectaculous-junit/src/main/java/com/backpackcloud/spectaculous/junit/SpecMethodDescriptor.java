@@ -0,0 +1,181 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous.junit;
+
+import com.backpackcloud.spectaculous.Event;
+import com.backpackcloud.spectaculous.Reporter;
+import com.backpackcloud.spectaculous.SpectacularException;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.junit.platform.commons.support.ReflectionSupport;
+import org.junit.platform.engine.TestTag;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.support.descriptor.AbstractTestDescriptor;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.engine.support.hierarchical.Node;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Describes a method annotated with {@link Specification}. When it runs, each
+ * statement checked by the method is registered as a dynamic test.
+ * <p>
+ * Statements are captured with {@link Reporter#capture Reporter.capture}, so the
+ * ones checked by the thread running the method and by the plans it verifies are
+ * registered. Statements checked by threads the method starts on its own are not.
+ * The tests are named after the scenario and the reason of the statements, and
+ * their durations are published as report entries.
+ */
+final class SpecMethodDescriptor extends AbstractTestDescriptor implements Node<SpectaculousEngine.Context> {
+
+  static final String SEGMENT_TYPE = "spec";
+
+  private final Class<?> type;
+  private final Method method;
+
+  SpecMethodDescriptor(UniqueId uniqueId, Class<?> type, Method method) {
+    super(uniqueId, method.getName(), MethodSource.from(type, method));
+    this.type = type;
+    this.method = method;
+  }
+
+  @Override
+  public Type getType() {
+    return Type.CONTAINER_AND_TEST;
+  }
+
+  @Override
+  public Set<TestTag> getTags() {
+    return AnnotationSupport.findAnnotation(method, Specification.class)
+        .map(specification -> Stream.of(specification.tags())
+            .filter(TestTag::isValid)
+            .map(TestTag::create)
+            .collect(Collectors.toSet()))
+        .orElse(Collections.emptySet());
+  }
+
+  @Override
+  public boolean mayRegisterTests() {
+    return true;
+  }
+
+  @Override
+  public SpectaculousEngine.Context execute(SpectaculousEngine.Context context,
+                                            DynamicTestExecutor dynamicTestExecutor) throws Exception {
+    List<Event> events = Collections.synchronizedList(new ArrayList<>());
+    Throwable thrown = run(context, events);
+
+    boolean reported = false;
+    List<Event> statements;
+    synchronized (events) {
+      statements = new ArrayList<>(events);
+    }
+    for (int i = 0; i < statements.size(); i++) {
+      Event event = statements.get(i);
+      StatementDescriptor statement = new StatementDescriptor(
+          getUniqueId().append(StatementDescriptor.SEGMENT_TYPE, "#" + (i + 1)),
+          displayName(event, i + 1), getSource().orElse(null), event);
+      addChild(statement);
+      dynamicTestExecutor.execute(statement);
+      reported |= !event.passed();
+    }
+    dynamicTestExecutor.awaitFinished();
+
+    if (thrown != null && !(reported && thrown instanceof SpectacularException)) {
+      rethrow(thrown);
+    }
+    return context;
+  }
+
+  private static void rethrow(Throwable thrown) throws Exception {
+    if (thrown instanceof Exception) {
+      throw (Exception) thrown;
+    }
+    if (thrown instanceof Error) {
+      throw (Error) thrown;
+    }
+    throw new IllegalStateException(thrown);
+  }
+
+  private Throwable run(SpectaculousEngine.Context context, List<Event> events) throws InterruptedException {
+    Duration timeout = timeout(context);
+    if (timeout.isZero()) {
+      return capture(events);
+    }
+    Future<Throwable> future = context.executor().submit(() -> capture(events));
+    try {
+      return future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    } catch (ExecutionException e) {
+      return e.getCause();
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      return new TimeoutException(String.format("%s timed out after %s", getDisplayName(), timeout));
+    }
+  }
+
+  private Throwable capture(List<Event> events) {
+    try {
+      Reporter.capture(events::add, () -> {
+        Object instance = Modifier.isStatic(method.getModifiers()) ? null : ReflectionSupport.newInstance(type);
+        try {
+          method.setAccessible(true);
+          method.invoke(instance);
+        } catch (InvocationTargetException e) {
+          throw e.getCause();
+        }
+      });
+      return null;
+    } catch (Throwable throwable) {
+      return throwable;
+    }
+  }
+
+  private Duration timeout(SpectaculousEngine.Context context) {
+    return AnnotationSupport.findAnnotation(method, Specification.class)
+        .filter(specification -> specification.timeout() > 0)
+        .map(specification -> Duration.ofNanos(specification.unit().toNanos(specification.timeout())))
+        .orElse(context.timeout());
+  }
+
+  private static String displayName(Event event, int index) {
+    return event.reason().isEmpty()
+        ? String.format(Locale.ROOT, "%s: %s #%d", event.scenario(), event.kind().name().toLowerCase(Locale.ROOT), index)
+        : String.format(Locale.ROOT, "%s: %s", event.scenario(), event.reason());
+  }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous.junit;
+
+import org.junit.platform.engine.DiscoverySelector;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.discovery.ClassSelector;
+import org.junit.platform.engine.discovery.DiscoverySelectors;
+import org.junit.platform.engine.discovery.MethodSelector;
+import org.junit.platform.engine.discovery.UniqueIdSelector;
+import org.junit.platform.engine.support.discovery.SelectorResolver;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves the classes and methods selected for discovery into descriptors.
+ */
+final class SpecResolver implements SelectorResolver {
+
+  @Override
+  public Resolution resolve(ClassSelector selector, Context context) {
+    Class<?> type = selector.getJavaClass();
+    if (!SpecClassDescriptor.isCandidate(type)) {
+      return Resolution.unresolved();
+    }
+    return context
+        .addToParent(parent -> Optional.of(new SpecClassDescriptor(
+            parent.getUniqueId().append(SpecClassDescriptor.SEGMENT_TYPE, type.getName()), type)))
+        .map(descriptor -> Resolution.match(Match.exact(descriptor, () -> methods(type))))
+        .orElse(Resolution.unresolved());
+  }
+
+  @Override
+  public Resolution resolve(MethodSelector selector, Context context) {
+    Class<?> type = selector.getJavaClass();
+    Method method = selector.getJavaMethod();
+    if (!SpecClassDescriptor.isCandidate(type) || !SpecClassDescriptor.isSpecification(method)) {
+      return Resolution.unresolved();
+    }
+    return context
+        .addToParent(() -> DiscoverySelectors.selectClass(type), parent -> Optional.of(new SpecMethodDescriptor(
+            parent.getUniqueId().append(SpecMethodDescriptor.SEGMENT_TYPE, method.getName()), type, method)))
+        .map(descriptor -> Resolution.match(Match.exact(descriptor)))
+        .orElse(Resolution.unresolved());
+  }
+
+  @Override
+  public Resolution resolve(UniqueIdSelector selector, Context context) {
+    List<UniqueId.Segment> segments = selector.getUniqueId().getSegments();
+    String className = null;
+    String methodName = null;
+    for (UniqueId.Segment segment : segments) {
+      if (segment.getType().equals(SpecClassDescriptor.SEGMENT_TYPE)) {
+        className = segment.getValue();
+      } else if (segment.getType().equals(SpecMethodDescriptor.SEGMENT_TYPE)) {
+        methodName = segment.getValue();
+      }
+    }
+    if (className == null) {
+      return Resolution.unresolved();
+    }
+    DiscoverySelector resolved = methodName == null
+        ? DiscoverySelectors.selectClass(className)
+        : DiscoverySelectors.selectMethod(className, methodName);
+    return Resolution.selectors(Collections.singleton(resolved));
+  }
+
+  private static Set<? extends DiscoverySelector> methods(Class<?> type) {
+    return SpecClassDescriptor.specifications(type).stream()
+        .map(method -> DiscoverySelectors.selectMethod(type, method))
+        .collect(Collectors.toCollection(LinkedHashSet::new));
+  }
+
+}
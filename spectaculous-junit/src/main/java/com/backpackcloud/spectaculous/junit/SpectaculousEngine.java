@@ -0,0 +1,162 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous.junit;
+
+import org.junit.platform.engine.ConfigurationParameters;
+import org.junit.platform.engine.EngineDiscoveryRequest;
+import org.junit.platform.engine.EngineExecutionListener;
+import org.junit.platform.engine.ExecutionRequest;
+import org.junit.platform.engine.TestDescriptor;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.support.config.PrefixedConfigurationParameters;
+import org.junit.platform.engine.support.descriptor.EngineDescriptor;
+import org.junit.platform.engine.support.discovery.EngineDiscoveryRequestResolver;
+import org.junit.platform.engine.support.hierarchical.EngineExecutionContext;
+import org.junit.platform.engine.support.hierarchical.ForkJoinPoolHierarchicalTestExecutorService;
+import org.junit.platform.engine.support.hierarchical.HierarchicalTestEngine;
+import org.junit.platform.engine.support.hierarchical.HierarchicalTestExecutorService;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A JUnit Platform engine that discovers the methods annotated with
+ * {@link Specification} and reports each statement they check as a test.
+ * <p>
+ * The engine is configured through the configuration parameters of the platform:
+ * <ul>
+ * <li>{@value #PARALLEL_PROPERTY} runs the specs concurrently, using the platform's
+ * parallel execution configured by the parameters prefixed with {@value #PARALLEL_CONFIG_PREFIX}</li>
+ * <li>{@value #TIMEOUT_PROPERTY} sets the default timeout of the specs, as an ISO-8601
+ * duration like {@code PT30S}</li>
+ * </ul>
+ */
+public final class SpectaculousEngine extends HierarchicalTestEngine<SpectaculousEngine.Context> {
+
+  /**
+   * The id of this engine.
+   */
+  public static final String ID = "spectaculous";
+
+  /**
+   * Configuration parameter that enables running the specs concurrently.
+   */
+  public static final String PARALLEL_PROPERTY = "spectaculous.execution.parallel.enabled";
+
+  /**
+   * Prefix of the configuration parameters of the parallel execution, like
+   * {@code strategy} and {@code fixed.parallelism}.
+   */
+  public static final String PARALLEL_CONFIG_PREFIX = "spectaculous.execution.parallel.config.";
+
+  /**
+   * Configuration parameter with the default timeout of the specs.
+   */
+  public static final String TIMEOUT_PROPERTY = "spectaculous.execution.timeout.default";
+
+  @Override
+  public String getId() {
+    return ID;
+  }
+
+  @Override
+  public TestDescriptor discover(EngineDiscoveryRequest request, UniqueId uniqueId) {
+    EngineDescriptor engine = new EngineDescriptor(uniqueId, "Spectaculous");
+    EngineDiscoveryRequestResolver.<EngineDescriptor>builder()
+        .addClassContainerSelectorResolver(SpecClassDescriptor::isCandidate)
+        .addSelectorResolver(new SpecResolver())
+        .build()
+        .resolve(request, engine);
+    return engine;
+  }
+
+  @Override
+  protected HierarchicalTestExecutorService createExecutorService(ExecutionRequest request) {
+    ConfigurationParameters parameters = request.getConfigurationParameters();
+    if (parameters.getBoolean(PARALLEL_PROPERTY).orElse(false)) {
+      return new ForkJoinPoolHierarchicalTestExecutorService(
+          new PrefixedConfigurationParameters(parameters, PARALLEL_CONFIG_PREFIX));
+    }
+    return super.createExecutorService(request);
+  }
+
+  @Override
+  protected Context createExecutionContext(ExecutionRequest request) {
+    Duration timeout = request.getConfigurationParameters()
+        .get(TIMEOUT_PROPERTY, Duration::parse)
+        .orElse(Duration.ZERO);
+    return new Context(timeout, request.getEngineExecutionListener());
+  }
+
+  /**
+   * Holds what is shared by the specs while they run.
+   */
+  public static final class Context implements EngineExecutionContext {
+
+    private final Duration timeout;
+    private final EngineExecutionListener listener;
+    private volatile ExecutorService executor;
+
+    private Context(Duration timeout, EngineExecutionListener listener) {
+      this.timeout = timeout;
+      this.listener = listener;
+    }
+
+    /**
+     * @return the default timeout of the specs, or zero if they don't time out
+     */
+    Duration timeout() {
+      return timeout;
+    }
+
+    /**
+     * @return the listener that receives the report entries of the specs
+     */
+    EngineExecutionListener listener() {
+      return listener;
+    }
+
+    /**
+     * @return the executor that runs the specs that may time out
+     */
+    ExecutorService executor() {
+      if (executor == null) {
+        synchronized (this) {
+          if (executor == null) {
+            executor = Executors.newCachedThreadPool(runnable -> {
+              Thread thread = new Thread(runnable, "spectaculous-junit");
+              thread.setDaemon(true);
+              return thread;
+            });
+          }
+        }
+      }
+      return executor;
+    }
+
+  }
+
+}
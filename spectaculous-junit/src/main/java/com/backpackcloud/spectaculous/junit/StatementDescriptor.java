@@ -0,0 +1,76 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous.junit;
+
+import com.backpackcloud.spectaculous.Event;
+import com.backpackcloud.spectaculous.SpectacularException;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.reporting.ReportEntry;
+import org.junit.platform.engine.support.descriptor.AbstractTestDescriptor;
+import org.junit.platform.engine.support.hierarchical.Node;
+
+import java.time.Duration;
+
+/**
+ * Describes a statement checked by a specification method. The statement was
+ * already checked when this descriptor is executed, so executing it only
+ * reports the outcome, along with the duration of the statement as the
+ * {@value #DURATION_KEY} report entry.
+ */
+final class StatementDescriptor extends AbstractTestDescriptor implements Node<SpectaculousEngine.Context> {
+
+  static final String SEGMENT_TYPE = "statement";
+
+  /**
+   * The key of the report entry with the duration of the statement, as an
+   * ISO-8601 duration.
+   */
+  static final String DURATION_KEY = "duration";
+
+  private final Event event;
+
+  StatementDescriptor(UniqueId uniqueId, String displayName, TestSource source, Event event) {
+    super(uniqueId, displayName, source);
+    this.event = event;
+  }
+
+  @Override
+  public Type getType() {
+    return Type.TEST;
+  }
+
+  @Override
+  public SpectaculousEngine.Context execute(SpectaculousEngine.Context context,
+                                            DynamicTestExecutor dynamicTestExecutor) {
+    context.listener().reportingEntryPublished(this,
+        ReportEntry.from(DURATION_KEY, Duration.ofNanos(event.nanos()).toString()));
+    if (!event.passed()) {
+      throw new SpectacularException(event.failure().toString(), event.failure().cause());
+    }
+    return context;
+  }
+
+}
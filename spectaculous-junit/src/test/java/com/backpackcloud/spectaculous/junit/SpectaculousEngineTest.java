@@ -0,0 +1,268 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.backpackcloud.spectaculous.junit;
+
+import com.backpackcloud.spectaculous.Spec;
+import com.backpackcloud.spectaculous.Spectacle;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.engine.TestDescriptor;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.TestTag;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.reporting.ReportEntry;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.testkit.engine.EngineExecutionResults;
+import org.junit.platform.testkit.engine.EngineTestKit;
+import org.junit.platform.testkit.engine.Event;
+import org.junit.platform.testkit.engine.Events;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectMethod;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectUniqueId;
+
+public class SpectaculousEngineTest {
+
+  /**
+   * The tag of the specs below, which the build excludes so they only run
+   * through the engine tests.
+   */
+  static final String FIXTURE = "fixture";
+
+  @Test
+  public void testDiscovery() {
+    TestDescriptor engine = discover(SpecsToRun.class);
+    assertEquals(1, engine.getChildren().size());
+    TestDescriptor type = engine.getChildren().iterator().next();
+    assertEquals("SpecsToRun", type.getDisplayName());
+    assertEquals(4, type.getChildren().size());
+    assertTrue(type.getChildren().stream().noneMatch(method -> method.getDisplayName().equals("helper")));
+
+    TestDescriptor method = discover(SpecsToRun.class, "passing").getChildren().iterator().next()
+        .getChildren().iterator().next();
+    assertEquals("passing", method.getDisplayName());
+    assertEquals(Set.of(TestTag.create(FIXTURE)), method.getTags());
+    assertTrue(method.mayRegisterTests());
+
+    UniqueId id = method.getUniqueId();
+    TestDescriptor resolved = new SpectaculousEngine().discover(LauncherDiscoveryRequestBuilder.request()
+        .selectors(selectUniqueId(id))
+        .build(), UniqueId.forEngine(SpectaculousEngine.ID));
+    assertTrue(resolved.findByUniqueId(id).isPresent());
+
+    assertTrue(discover(SpectaculousEngineTest.class).getChildren().isEmpty());
+  }
+
+  @Test
+  public void testDynamicStatements() {
+    EngineExecutionResults results = EngineTestKit.engine(new SpectaculousEngine())
+        .selectors(selectClass(SpecsToRun.class))
+        .execute();
+
+    Events statements = results.all().dynamicallyRegistered();
+    assertEquals(7, statements.count());
+    assertEquals(names("failing: It should have 1 letter", "failing: expect #1", "java.lang.String: It has 12 letters",
+        "java.lang.String: expect #2", "planned: expect #1", "planned: expect #2", "planned: expect #3"), names(statements));
+    assertEquals(7, results.all().reportingEntryPublished().stream()
+        .map(event -> event.getRequiredPayload(ReportEntry.class).getKeyValuePairs().get("duration"))
+        .filter(duration -> !Duration.parse(duration).isNegative())
+        .count());
+
+    Events tests = results.tests();
+    assertEquals(11, tests.started().count());
+    assertEquals(9, tests.succeeded().count());
+    assertEquals(names("broken", "failing: It should have 1 letter"), names(tests.failed()));
+    assertTrue(failure(tests, "failing: It should have 1 letter").getMessage().contains("expected: 1, actual: 12"));
+    assertEquals("broken", failure(tests, "broken").getMessage());
+  }
+
+  @Test
+  public void testTimeout() {
+    Events tests = EngineTestKit.engine(new SpectaculousEngine())
+        .selectors(selectMethod(SpecsToTimeOut.class, "stuck"))
+        .execute()
+        .tests();
+    assertEquals("stuck timed out after PT0.05S", failure(tests, "stuck").getMessage());
+
+    tests = EngineTestKit.engine(new SpectaculousEngine())
+        .selectors(selectMethod(SpecsToTimeOut.class, "slow"))
+        .configurationParameter(SpectaculousEngine.TIMEOUT_PROPERTY, "PT0.05S")
+        .execute()
+        .tests();
+    assertEquals("slow timed out after PT0.05S", failure(tests, "slow").getMessage());
+
+    tests = EngineTestKit.engine(new SpectaculousEngine())
+        .selectors(selectMethod(SpecsToTimeOut.class, "slow"))
+        .execute()
+        .tests();
+    assertEquals(2, tests.succeeded().count());
+  }
+
+  @Test
+  public void testParallelExecution() {
+    Events tests = EngineTestKit.engine(new SpectaculousEngine())
+        .selectors(selectClass(SpecsToRunInParallel.class))
+        .configurationParameter(SpectaculousEngine.PARALLEL_PROPERTY, "true")
+        .configurationParameter(SpectaculousEngine.PARALLEL_CONFIG_PREFIX + "strategy", "fixed")
+        .configurationParameter(SpectaculousEngine.PARALLEL_CONFIG_PREFIX + "fixed.parallelism", "2")
+        .execute()
+        .tests();
+    assertEquals(0, tests.failed().count());
+    assertEquals(4, tests.succeeded().count());
+  }
+
+  private static TestDescriptor discover(Class<?> type) {
+    return new SpectaculousEngine().discover(LauncherDiscoveryRequestBuilder.request()
+        .selectors(selectClass(type))
+        .build(), UniqueId.forEngine(SpectaculousEngine.ID));
+  }
+
+  private static TestDescriptor discover(Class<?> type, String method) {
+    return new SpectaculousEngine().discover(LauncherDiscoveryRequestBuilder.request()
+        .selectors(selectMethod(type, method))
+        .build(), UniqueId.forEngine(SpectaculousEngine.ID));
+  }
+
+  private static List<String> names(String... names) {
+    return List.of(names);
+  }
+
+  /**
+   * Returns the sorted names of the tests of the given events, since specs may
+   * run in any order.
+   */
+  private static List<String> names(Events events) {
+    return events.stream()
+        .map(SpectaculousEngineTest::name)
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  private static String name(Event event) {
+    return event.getTestDescriptor().getDisplayName();
+  }
+
+  private static Throwable failure(Events tests, String name) {
+    return tests.failed().stream()
+        .filter(event -> name(event).equals(name))
+        .findFirst()
+        .flatMap(event -> event.getRequiredPayload(TestExecutionResult.class).getThrowable())
+        .orElseThrow(() -> new AssertionError(name + " didn't fail"));
+  }
+
+  public static class SpecsToRun {
+
+    @Specification(tags = FIXTURE)
+    public void passing() {
+      Spec.describe(String.class)
+          .given("spectaculous")
+          .because("It has 12 letters")
+          .expect(12).from(String::length)
+          .because("")
+          .expect(true).from(s -> s.startsWith("spec"));
+    }
+
+    @Specification(tags = FIXTURE)
+    public void failing() {
+      Spectacle<String> spec = Spec.softly("failing");
+      spec.given("spectaculous")
+          .expect(12).from(String::length)
+          .because("It should have 1 letter")
+          .expect(1).from(String::length)
+          .verify();
+    }
+
+    @Specification(tags = FIXTURE)
+    public static void planned() {
+      Spectacle<String> spec = Spec.plan("planned");
+      spec.given("spec")
+          .expect(4).from(String::length)
+          .given("spectaculous")
+          .expect(12).from(String::length)
+          .expect('s').from(s -> s.charAt(0))
+          .verify();
+    }
+
+    @Specification(tags = FIXTURE)
+    public void broken() {
+      throw new IllegalStateException("broken");
+    }
+
+    public void helper() {
+
+    }
+
+  }
+
+  public static class SpecsToTimeOut {
+
+    @Specification(timeout = 50, unit = TimeUnit.MILLISECONDS, tags = FIXTURE)
+    public void stuck() {
+      Spec.describe("stuck").waitFor(() -> Thread.sleep(10_000));
+    }
+
+    @Specification(tags = FIXTURE)
+    public void slow() {
+      Spec.describe("slow").waitFor(() -> Thread.sleep(200));
+    }
+
+  }
+
+  public static class SpecsToRunInParallel {
+
+    private static final CountDownLatch LATCH = new CountDownLatch(2);
+
+    @Specification(tags = FIXTURE)
+    public void first() {
+      meet();
+    }
+
+    @Specification(tags = FIXTURE)
+    public void second() {
+      meet();
+    }
+
+    private static void meet() {
+      // only passes if the other spec runs at the same time
+      Spec.describe(CountDownLatch.class)
+          .given(LATCH)
+          .expect(true).from(latch -> {
+            latch.countDown();
+            return latch.await(5, TimeUnit.SECONDS);
+          });
+    }
+
+  }
+
+}
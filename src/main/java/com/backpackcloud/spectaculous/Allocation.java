@@ -0,0 +1,155 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * A measure that checks how many bytes an operation allocates on each call.
+ * <p>
+ * The bytes allocated by the current thread are read before and after the
+ * measured iterations and averaged over them. Reading the counter may allocate
+ * by itself, so the cost of a read is calibrated and discounted. The operation
+ * runs a number of warmup iterations first, giving the JIT compiler a chance
+ * to remove allocations through escape analysis.
+ * <p>
+ * This measure depends on {@code com.sun.management.ThreadMXBean}, and fails
+ * the statement if the runtime doesn't support it.
+ */
+public final class Allocation implements Measure {
+
+  private static final int CALIBRATION_ROUNDS = 10;
+
+  private static volatile Object sink;
+
+  private final long budget;
+  private final int warmup;
+  private final int iterations;
+
+  private Allocation(long budget, int warmup, int iterations) {
+    if (budget < 0) {
+      throw new IllegalArgumentException("Invalid budget: " + budget);
+    }
+    if (warmup < 0 || iterations < 1) {
+      throw new IllegalArgumentException("Invalid iteration count");
+    }
+    this.budget = budget;
+    this.warmup = warmup;
+    this.iterations = iterations;
+  }
+
+  /**
+   * Sets how many times the operation runs before being measured. Defaults to 10000.
+   *
+   * @param warmup the number of warmup iterations
+   * @return a new Allocation that uses the given warmup
+   */
+  public Allocation warmup(int warmup) {
+    return new Allocation(budget, warmup, iterations);
+  }
+
+  /**
+   * Sets how many times the operation runs while being measured. Defaults to 10000.
+   *
+   * @param iterations the number of measured iterations
+   * @return a new Allocation that uses the given iterations
+   */
+  public Allocation iterations(int iterations) {
+    return new Allocation(budget, warmup, iterations);
+  }
+
+  @Override
+  public <T> Result measure(T target, Operation<? super T, ?> operation) throws Throwable {
+    com.sun.management.ThreadMXBean bean = threadBean();
+    long thread = Thread.currentThread().getId();
+
+    Object result = null;
+    for (int i = 0; i < warmup; i++) {
+      result = operation.execute(target);
+    }
+
+    long overhead = Long.MAX_VALUE;
+    for (int i = 0; i < CALIBRATION_ROUNDS; i++) {
+      long start = bean.getThreadAllocatedBytes(thread);
+      overhead = Math.min(overhead, bean.getThreadAllocatedBytes(thread) - start);
+    }
+
+    long start = bean.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < iterations; i++) {
+      result = operation.execute(target);
+    }
+    long allocated = Math.max(0, bean.getThreadAllocatedBytes(thread) - start - overhead);
+    sink = result;
+
+    double perCall = (double) allocated / iterations;
+    return Result.of(perCall <= budget, String.format(Locale.ROOT,
+        "allocated %s per call, budget %s per call", format(perCall), format(budget)));
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT, "at most %s per call", format(budget));
+  }
+
+  private static com.sun.management.ThreadMXBean threadBean() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      throw new UnsupportedOperationException("Thread allocation measurement is not supported");
+    }
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+    if (!threadBean.isThreadAllocatedMemorySupported()) {
+      throw new UnsupportedOperationException("Thread allocation measurement is not supported");
+    }
+    if (!threadBean.isThreadAllocatedMemoryEnabled()) {
+      threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+    return threadBean;
+  }
+
+  /**
+   * Creates an Allocation that requires each call of the operation to allocate
+   * at most the given number of bytes.
+   *
+   * @param bytes the allocation budget, in bytes per call
+   * @return a new Allocation
+   */
+  public static Allocation allocatesAtMost(long bytes) {
+    return new Allocation(bytes, 10_000, 10_000);
+  }
+
+  static String format(double bytes) {
+    if (bytes < 1024) {
+      return bytes == Math.rint(bytes)
+          ? (long) bytes + " B"
+          : String.format(Locale.ROOT, "%.1f B", bytes);
+    }
+    if (bytes < 1024 * 1024) {
+      return String.format(Locale.ROOT, "%.1f KiB", bytes / 1024);
+    }
+    return String.format(Locale.ROOT, "%.1f MiB", bytes / (1024 * 1024));
+  }
+
+}
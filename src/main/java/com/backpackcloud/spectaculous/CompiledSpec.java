@@ -0,0 +1,273 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable set of statements that can be evaluated against any number of
+ * target objects.
+ * <p>
+ * The statements are defined once, through {@link Spec#compile(String, java.util.function.Function)},
+ * and evaluating them doesn't allocate anything while they are followed, which
+ * makes a CompiledSpec suitable for checking invariants on a hot path. A
+ * CompiledSpec can be shared by concurrent threads as long as the statements
+ * themselves are thread safe.
+ *
+ * @param <T> the type of the target object
+ */
+public final class CompiledSpec<T> implements Predicate<T> {
+
+  private static final int DEFAULT_SAMPLES = 10;
+
+  private final String scenario;
+  private final Spec.Step<T>[] steps;
+  private final int samples;
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  CompiledSpec(String scenario, List<Spec.Step<?>> steps) {
+    this(scenario, steps.toArray(new Spec.Step[0]), DEFAULT_SAMPLES);
+  }
+
+  private CompiledSpec(String scenario, Spec.Step<T>[] steps, int samples) {
+    if (samples < 0) {
+      throw new IllegalArgumentException("Invalid sample count: " + samples);
+    }
+    this.scenario = scenario;
+    this.steps = steps;
+    this.samples = samples;
+  }
+
+  /**
+   * Sets how many failures of each statement are kept in the summary of a
+   * dataset. Defaults to 10.
+   *
+   * @param samples the number of failures to keep for each statement
+   * @return a new CompiledSpec that keeps the given number of failures
+   */
+  public CompiledSpec<T> samples(int samples) {
+    return new CompiledSpec<>(scenario, steps, samples);
+  }
+
+  /**
+   * Evaluates the statements against the given target object.
+   *
+   * @param target the target object
+   * @throws SpectacularException if any statement is not followed
+   */
+  public void evaluate(T target) {
+    for (Spec.Step<T> step : steps) {
+      step.evaluate(target);
+    }
+  }
+
+  /**
+   * Tests if the given target object follows all statements. Unlike
+   * {@link #evaluate(Object)}, failures are not reported.
+   *
+   * @param target the target object
+   * @return {@code true} if all statements are followed
+   */
+  @Override
+  public boolean test(T target) {
+    for (Spec.Step<T> step : steps) {
+      if (!step.test(target)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks every element of the given stream against the statements. Elements
+   * are consumed as they come, so the stream can be larger than the memory.
+   * A parallel stream is checked in parallel, using the {@code ForkJoinPool}
+   * that runs the stream.
+   *
+   * @param elements the target objects
+   * @return the summary of the failures
+   */
+  public Summary forEach(Stream<? extends T> elements) {
+    Tally tally = new Tally();
+    elements.forEach(tally);
+    return tally.summary();
+  }
+
+  /**
+   * Checks every element of the given iterable against the statements.
+   *
+   * @param elements the target objects
+   * @return the summary of the failures
+   * @see #forEach(Stream)
+   */
+  public Summary forEach(Iterable<? extends T> elements) {
+    Tally tally = new Tally();
+    elements.forEach(tally);
+    return tally.summary();
+  }
+
+  /**
+   * Checks every remaining element of the given spliterator against the statements.
+   *
+   * @param elements the target objects
+   * @return the summary of the failures
+   * @see #forEach(Stream)
+   */
+  public Summary forEach(Spliterator<? extends T> elements) {
+    Tally tally = new Tally();
+    elements.forEachRemaining(tally);
+    return tally.summary();
+  }
+
+  /**
+   * Checks every element of the given stream against the statements, like
+   * {@link #forEach(Stream)}, recording the results of the operations and the
+   * outcomes of the actions to the given trace file. The trace is written as
+   * the elements are checked, so it can be larger than the memory.
+   * <p>
+   * The target objects themselves are not recorded, only what the statements
+   * got from them. Only primitives, strings and byte arrays are recorded: a
+   * statement whose operation returns another object fails with an
+   * {@link IOException}, so replaying a trace never deserializes objects.
+   *
+   * @param elements the target objects
+   * @param trace    the file to record to, which is replaced if it exists
+   * @return the summary of the failures
+   * @throws IOException if the trace can't be written
+   * @see #replay(Path)
+   */
+  public Summary record(Stream<? extends T> elements, Path trace) throws IOException {
+    Tally tally = new Tally();
+    try (Tape.Writer writer = Tape.writer(trace, scenario, steps.length)) {
+      elements.forEach(element -> writer.record(() -> tally.accept(element)));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    return tally.summary();
+  }
+
+  /**
+   * Checks the statements again against a trace recorded by {@link #record(Stream, Path)},
+   * without running the operations or the actions. This allows changing the
+   * expectations without running an expensive setup again. The trace is read
+   * in batches and checked in parallel.
+   * <p>
+   * Statements that measure the target object, like measures and workloads,
+   * are not replayed and count as followed.
+   *
+   * @param trace the recorded trace
+   * @return the summary of the failures
+   * @throws IOException if the trace can't be read or was recorded by another spec
+   */
+  public Summary replay(Path trace) throws IOException {
+    Tally tally = new Tally();
+    try (Tape.Reader reader = Tape.reader(trace, scenario, steps.length)) {
+      StreamSupport.stream(reader, true).forEach(frame -> Tape.replay(frame, () -> tally.accept(null)));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    return tally.summary();
+  }
+
+  /**
+   * @return how many statements this CompiledSpec has
+   */
+  public int size() {
+    return steps.length;
+  }
+
+  /**
+   * Counts the failures of each statement while the elements of a dataset are
+   * checked, possibly from concurrent threads.
+   */
+  private final class Tally implements Consumer<T> {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder passed = new LongAdder();
+    private final LongAdder[] failed = new LongAdder[steps.length];
+    private final AtomicInteger[] sampled = new AtomicInteger[steps.length];
+    private final AtomicReferenceArray<Failure> failures = new AtomicReferenceArray<>(steps.length * samples);
+
+    private Tally() {
+      for (int i = 0; i < steps.length; i++) {
+        failed[i] = new LongAdder();
+        sampled[i] = new AtomicInteger();
+      }
+    }
+
+    @Override
+    public void accept(T target) {
+      count.increment();
+      boolean followed = true;
+      for (int i = 0; i < steps.length; i++) {
+        Failure failure = steps[i].check(target);
+        if (failure != null) {
+          followed = false;
+          failed[i].increment();
+          if (sampled[i].get() < samples) {
+            int index = sampled[i].getAndIncrement();
+            if (index < samples) {
+              failures.set(i * samples + index, failure);
+            }
+          }
+        }
+      }
+      if (followed) {
+        passed.increment();
+      }
+    }
+
+    private Summary summary() {
+      long[] failedCounts = new long[steps.length];
+      List<List<Failure>> kept = new ArrayList<>(steps.length);
+      for (int i = 0; i < steps.length; i++) {
+        failedCounts[i] = failed[i].sum();
+        List<Failure> statementFailures = new ArrayList<>();
+        for (int j = 0; j < samples; j++) {
+          Failure failure = failures.get(i * samples + j);
+          if (failure != null) {
+            statementFailures.add(failure);
+          }
+        }
+        kept.add(statementFailures);
+      }
+      return new Summary(scenario, count.sum(), passed.sum(), failedCounts, kept);
+    }
+
+  }
+
+}
@@ -0,0 +1,256 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Defines how the time an operation takes may grow with the size of its input,
+ * like {@code O(n)} or {@code O(n log n)}.
+ * <p>
+ * The operation is timed over a geometric series of input sizes, each input
+ * being built before the operation runs and outside of the timing, and the
+ * median time of each size is taken. The times are divided by the declared
+ * complexity and a least squares fit of their logarithms estimates how many
+ * powers of {@code n} they still grow. The statement fails if that growth
+ * exponent exceeds the tolerance, so an operation declared as {@code O(n)}
+ * that turns out to be quadratic has a growth exponent close to 1.
+ * <p>
+ * The time of a single call is measured, so the operation should take at
+ * least a few microseconds at the smallest size.
+ */
+public final class Complexity {
+
+  private static volatile Object sink;
+
+  private final String name;
+  private final DoubleUnaryOperator function;
+  private final int from;
+  private final int to;
+  private final int steps;
+  private final int warmup;
+  private final int samples;
+  private final double tolerance;
+
+  private Complexity(String name, DoubleUnaryOperator function,
+                     int from, int to, int steps, int warmup, int samples, double tolerance) {
+    if (from < 2 || to <= from) {
+      throw new IllegalArgumentException("Invalid sizes: " + from + ".." + to);
+    }
+    if (steps < 3) {
+      throw new IllegalArgumentException("Invalid step count: " + steps);
+    }
+    if (warmup < 0 || samples < 1) {
+      throw new IllegalArgumentException("Invalid iteration count");
+    }
+    if (tolerance < 0) {
+      throw new IllegalArgumentException("Invalid tolerance: " + tolerance);
+    }
+    this.name = name;
+    this.function = function;
+    this.from = from;
+    this.to = to;
+    this.steps = steps;
+    this.warmup = warmup;
+    this.samples = samples;
+    this.tolerance = tolerance;
+  }
+
+  /**
+   * Sets the smallest and the largest input sizes. Defaults to 1000 and 100000.
+   *
+   * @param from the smallest size
+   * @param to   the largest size
+   * @return a new Complexity that uses the given sizes
+   */
+  public Complexity sizes(int from, int to) {
+    return new Complexity(name, function, from, to, steps, warmup, samples, tolerance);
+  }
+
+  /**
+   * Sets how many sizes are timed, spaced geometrically between the smallest
+   * and the largest. Defaults to 6.
+   *
+   * @param steps the number of sizes
+   * @return a new Complexity that uses the given number of sizes
+   */
+  public Complexity steps(int steps) {
+    return new Complexity(name, function, from, to, steps, warmup, samples, tolerance);
+  }
+
+  /**
+   * Sets how many times the operation runs for each size before being timed.
+   * Defaults to 5.
+   *
+   * @param warmup the number of warmup rounds
+   * @return a new Complexity that uses the given warmup
+   */
+  public Complexity warmup(int warmup) {
+    return new Complexity(name, function, from, to, steps, warmup, samples, tolerance);
+  }
+
+  /**
+   * Sets how many times the operation is timed for each size. Defaults to 5.
+   *
+   * @param samples the number of samples
+   * @return a new Complexity that uses the given number of samples
+   */
+  public Complexity samples(int samples) {
+    return new Complexity(name, function, from, to, steps, warmup, samples, tolerance);
+  }
+
+  /**
+   * Sets the tolerated growth exponent beyond the declared complexity. Defaults
+   * to 0.25, which tells linear growth from quadratic growth but not from
+   * {@code n log n} growth.
+   *
+   * @param tolerance the tolerated growth exponent
+   * @return a new Complexity that uses the given tolerance
+   */
+  public Complexity tolerance(double tolerance) {
+    return new Complexity(name, function, from, to, steps, warmup, samples, tolerance);
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+  <T> Measure.Result measure(IntFunction<? extends T> input, Operation<? super T, ?> operation) throws Throwable {
+    int[] sizes = sizes();
+    Object result = null;
+    for (int round = 0; round < warmup; round++) {
+      for (int size : sizes) {
+        result = operation.execute(input.apply(size));
+      }
+    }
+
+    // sizes are interleaved so any drift, like a late compilation, affects all of them alike
+    long[][] times = new long[sizes.length][samples];
+    for (int sample = 0; sample < samples; sample++) {
+      for (int i = 0; i < sizes.length; i++) {
+        T target = input.apply(sizes[i]);
+        long start = System.nanoTime();
+        result = operation.execute(target);
+        times[i][sample] = System.nanoTime() - start;
+      }
+    }
+    sink = result;
+
+    long[] medians = new long[sizes.length];
+    for (int i = 0; i < sizes.length; i++) {
+      Arrays.sort(times[i]);
+      medians[i] = Math.max(1, times[i][samples / 2]);
+    }
+
+    double[] x = new double[sizes.length];
+    double[] y = new double[sizes.length];
+    for (int i = 0; i < sizes.length; i++) {
+      x[i] = Math.log(sizes[i]);
+      y[i] = Math.log(medians[i] / function.applyAsDouble(sizes[i]));
+    }
+    double exponent = slope(x, y);
+    int last = sizes.length - 1;
+    return Measure.Result.of(exponent <= tolerance, String.format(Locale.ROOT,
+        "grows n^%.2f beyond %s, tolerance %.2f (median %s at n=%d, %s at n=%d)",
+        exponent, name, tolerance,
+        Latency.format(medians[0]), sizes[0], Latency.format(medians[last]), sizes[last]));
+  }
+
+  private int[] sizes() {
+    double ratio = Math.pow((double) to / from, 1.0 / (steps - 1));
+    return IntStream.range(0, steps)
+        .map(i -> i == steps - 1 ? to : (int) Math.round(from * Math.pow(ratio, i)))
+        .distinct()
+        .toArray();
+  }
+
+  private static double slope(double[] x, double[] y) {
+    double meanX = Arrays.stream(x).average().orElse(0);
+    double meanY = Arrays.stream(y).average().orElse(0);
+    double covariance = 0;
+    double variance = 0;
+    for (int i = 0; i < x.length; i++) {
+      covariance += (x[i] - meanX) * (y[i] - meanY);
+      variance += (x[i] - meanX) * (x[i] - meanX);
+    }
+    return covariance / variance;
+  }
+
+  private static Complexity of(String name, DoubleUnaryOperator function) {
+    return new Complexity(name, function, 1_000, 100_000, 6, 5, 5, 0.25);
+  }
+
+  /**
+   * @return a Complexity that requires the time to not grow with the size
+   */
+  public static Complexity constant() {
+    return of("O(1)", n -> 1);
+  }
+
+  /**
+   * @return a Complexity that requires the time to grow at most logarithmically
+   */
+  public static Complexity logarithmic() {
+    return of("O(log n)", Math::log);
+  }
+
+  /**
+   * @return a Complexity that requires the time to grow at most linearly
+   */
+  public static Complexity linear() {
+    return of("O(n)", n -> n);
+  }
+
+  /**
+   * @return a Complexity that requires the time to grow at most as {@code n log n}
+   */
+  public static Complexity linearithmic() {
+    return of("O(n log n)", n -> n * Math.log(n));
+  }
+
+  /**
+   * @return a Complexity that requires the time to grow at most quadratically
+   */
+  public static Complexity quadratic() {
+    return of("O(n^2)", n -> n * n);
+  }
+
+  /**
+   * Creates a Complexity that requires the time to grow at most as the given
+   * power of the size.
+   *
+   * @param exponent the exponent of the size
+   * @return a new Complexity
+   */
+  public static Complexity polynomial(double exponent) {
+    return of(String.format(Locale.ROOT, "O(n^%s)", Latency.formatPercentile(exponent)), n -> Math.pow(n, exponent));
+  }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.util.SplittableRandom;
+import java.util.function.DoubleFunction;
+import java.util.stream.DoubleStream;
+import java.util.stream.Stream;
+
+/**
+ * A generator of doubles. Specs generate and shrink the values through the
+ * primitive methods, and box each value only when it's given to a statement as
+ * the target object.
+ */
+@FunctionalInterface
+public interface DoubleGen extends Gen<Double> {
+
+  /**
+   * The number of times the distance to the simplest value is halved while
+   * shrinking.
+   */
+  int SHRINK_STEPS = 16;
+
+  /**
+   * Generates a new value.
+   *
+   * @param random the source of randomness
+   * @return the generated value
+   */
+  double generateDouble(SplittableRandom random);
+
+  /**
+   * Returns simpler versions of the given value, the simplest first. The default
+   * implementation doesn't shrink values.
+   *
+   * @param value the value to shrink
+   * @return the simpler versions of the value
+   */
+  default DoubleStream shrinkDouble(double value) {
+    return DoubleStream.empty();
+  }
+
+  @Override
+  default Double generate(SplittableRandom random) {
+    return generateDouble(random);
+  }
+
+  @Override
+  default Stream<Double> shrink(Double value) {
+    return shrinkDouble(value).boxed();
+  }
+
+  /**
+   * Creates a generator of objects built from the values generated by this one.
+   * The objects are not shrunk.
+   *
+   * @param mapper the function to build the objects
+   * @return a new generator
+   */
+  default <T> Gen<T> mapToObj(DoubleFunction<? extends T> mapper) {
+    return random -> mapper.apply(generateDouble(random));
+  }
+
+  /**
+   * Creates a generator of doubles in the given range. Besides random values,
+   * the minimum and the value closest to zero are generated more often, and
+   * values shrink towards the one closest to zero, preferring whole numbers.
+   *
+   * @param min the minimum value, inclusive
+   * @param max the maximum value, exclusive
+   * @return a new generator
+   */
+  static DoubleGen range(double min, double max) {
+    if (!(min < max) || Double.isInfinite(min) || Double.isInfinite(max)) {
+      throw new IllegalArgumentException("Invalid range: " + min + ".." + max);
+    }
+    double origin = Math.max(min, Math.min(Math.nextDown(max), 0));
+    return new DoubleGen() {
+      @Override
+      public double generateDouble(SplittableRandom random) {
+        switch (random.nextInt(16)) {
+          case 0:
+            return min;
+          case 1:
+            return origin;
+          default:
+            return random.nextDouble(min, max);
+        }
+      }
+
+      @Override
+      public DoubleStream shrinkDouble(double value) {
+        if (value == origin || Double.isNaN(value)) {
+          return DoubleStream.empty();
+        }
+        double whole = (double) (long) value;
+        DoubleStream candidates = whole != value && whole >= min && whole < max
+            ? DoubleStream.of(origin, whole)
+            : DoubleStream.of(origin);
+        double distance = value - origin;
+        return DoubleStream.concat(candidates,
+            DoubleStream.iterate(distance / 2, half -> half / 2)
+                .limit(SHRINK_STEPS)
+                .map(half -> value - half)
+                .filter(candidate -> candidate != value && candidate != origin));
+      }
+    };
+  }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+/**
+ * Describes a statement that was checked: which spec defined it, how it ended
+ * and how long it took.
+ *
+ * @see Reporter
+ */
+public final class Event {
+
+  /**
+   * The kinds of statements.
+   */
+  public enum Kind {
+    /**
+     * A statement about the result of an operation or the exception of an action.
+     */
+    EXPECT,
+    /**
+     * A statement about the outcome of an action.
+     */
+    THEN,
+    /**
+     * A statement about a mix of actions run from concurrent threads.
+     */
+    STRESS,
+    /**
+     * A statement about how an operation behaves, like its latency.
+     */
+    MEASURE,
+    /**
+     * A statement about how the target copes with a workload.
+     */
+    WORKLOAD,
+    /**
+     * An action that runs before the following statements.
+     */
+    WAIT
+  }
+
+  private final String scenario;
+  private final String reason;
+  private final Kind kind;
+  private final Failure failure;
+  private final long nanos;
+
+  Event(String scenario, String reason, Kind kind, Failure failure, long nanos) {
+    this.scenario = scenario;
+    this.reason = reason;
+    this.kind = kind;
+    this.failure = failure;
+    this.nanos = nanos;
+  }
+
+  /**
+   * @return the scenario of the spec
+   */
+  public String scenario() {
+    return scenario;
+  }
+
+  /**
+   * @return the reason of the statement, or an empty string if none was given
+   */
+  public String reason() {
+    return reason;
+  }
+
+  /**
+   * @return the kind of the statement
+   */
+  public Kind kind() {
+    return kind;
+  }
+
+  /**
+   * @return {@code true} if the statement was followed
+   */
+  public boolean passed() {
+    return failure == null;
+  }
+
+  /**
+   * @return the failure, or {@code null} if the statement was followed
+   */
+  public Failure failure() {
+    return failure;
+  }
+
+  /**
+   * @return how long the statement took, in nanoseconds, including retries
+   */
+  public long nanos() {
+    return nanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s %s in %s", kind, failure == null ? "passed" : "failed", Latency.format(nanos));
+  }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import org.hamcrest.Matcher;
+import org.hamcrest.StringDescription;
+
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A predicate that knows how to describe what it expects, so failures can
+ * quote the expected value.
+ */
+final class Expectation<R> implements Predicate<R> {
+
+  private final Predicate<? super R> predicate;
+  private final Supplier<String> description;
+
+  private Expectation(Predicate<? super R> predicate, Supplier<String> description) {
+    this.predicate = predicate;
+    this.description = description;
+  }
+
+  @Override
+  public boolean test(R r) {
+    return predicate.test(r);
+  }
+
+  /**
+   * Describes the expected value. The description is built only when needed.
+   *
+   * @return the description of the expected value
+   */
+  @Override
+  public String toString() {
+    return description.get();
+  }
+
+  static <R> Expectation<R> equalTo(Supplier<R> supplier) {
+    return new Expectation<>(r -> Objects.equals(r, supplier.get()), () -> String.valueOf(supplier.get()));
+  }
+
+  static <R> Expectation<R> matching(Matcher<? super R> matcher) {
+    return new Expectation<>(matcher::matches, () -> StringDescription.toString(matcher));
+  }
+
+}
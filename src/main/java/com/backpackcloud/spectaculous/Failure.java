@@ -0,0 +1,104 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+/**
+ * Describes a statement that was not followed.
+ * <p>
+ * A Failure only keeps references to what was involved in the statement, the
+ * text describing them is built only when requested.
+ */
+public final class Failure {
+
+  private final String scenario;
+  private final String reason;
+  private final String detail;
+  private final Object expected;
+  private final Object actual;
+  private final Throwable cause;
+
+  Failure(String scenario, String reason, String detail, Object expected, Object actual, Throwable cause) {
+    this.scenario = scenario;
+    this.reason = reason;
+    this.detail = detail;
+    this.expected = expected;
+    this.actual = actual;
+    this.cause = cause;
+  }
+
+  /**
+   * @return the scenario of the spec
+   */
+  public String scenario() {
+    return scenario;
+  }
+
+  /**
+   * @return the reason of the statement, or an empty string if none was given
+   */
+  public String reason() {
+    return reason;
+  }
+
+  /**
+   * @return the description of the expected value, or {@code null} if it's not known
+   */
+  public String expected() {
+    return expected == null ? null : expected.toString();
+  }
+
+  /**
+   * @return the actual value, or {@code null} if the statement doesn't produce one
+   */
+  public Object actual() {
+    return actual;
+  }
+
+  /**
+   * @return the throwable that caused the failure, or {@code null} if there is none
+   */
+  public Throwable cause() {
+    return cause;
+  }
+
+  /**
+   * Describes this failure as the scenario and the reason, followed by any detail
+   * about the statement.
+   *
+   * @return the description of this failure
+   */
+  @Override
+  public String toString() {
+    String message = reason.isEmpty() ? scenario : String.format("%s: %s", scenario, reason);
+    if (detail != null) {
+      return String.format("%s (%s)", message, detail);
+    }
+    if (expected != null) {
+      return String.format("%s (expected: %s, actual: %s)", message, expected, actual);
+    }
+    return message;
+  }
+
+}
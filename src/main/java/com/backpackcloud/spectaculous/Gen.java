@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.util.SplittableRandom;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Defines a generator of target objects for property based specs.
+ * <p>
+ * When a spec is given a generator, each statement is checked against a number
+ * of generated target objects. If any of them doesn't follow the statement, it's
+ * shrunk to the simplest one that still fails, which is quoted in the failure.
+ * The trials run in parallel, so the statements should be thread safe.
+ * <p>
+ * The generators of numbers are specialized for primitives, so generators built
+ * on them, like the ones created by {@code mapToObj}, don't box the values. The
+ * numbers checked by the statements are boxed, like any target object.
+ *
+ * @param <T> the type of the generated objects
+ * @see IntGen
+ * @see LongGen
+ * @see DoubleGen
+ */
+@FunctionalInterface
+public interface Gen<T> {
+
+  /**
+   * Generates a new object.
+   *
+   * @param random the source of randomness, which should be the only one used
+   *               so the objects can be generated again from the same seed
+   * @return the generated object
+   */
+  T generate(SplittableRandom random);
+
+  /**
+   * Returns simpler versions of the given object, the simplest first. The default
+   * implementation doesn't shrink objects.
+   *
+   * @param value the object to shrink
+   * @return the simpler versions of the object
+   */
+  default Stream<T> shrink(T value) {
+    return Stream.empty();
+  }
+
+  /**
+   * Creates a generator that maps the objects generated by this one. The mapped
+   * objects are not shrunk.
+   *
+   * @param mapper the function to map the generated objects
+   * @return a new generator
+   */
+  default <R> Gen<R> map(Function<? super T, ? extends R> mapper) {
+    return random -> mapper.apply(generate(random));
+  }
+
+  /**
+   * Sets how many objects are generated for each statement. Defaults to 1000.
+   *
+   * @param trials the number of generated objects
+   * @return a new generator that uses the given number of trials
+   */
+  default Gen<T> trials(int trials) {
+    return Generated.of(this).trials(trials);
+  }
+
+  /**
+   * Fixes the seed of the generated objects. Defaults to a new seed for each
+   * statement, which is quoted in the failure.
+   *
+   * @param seed the seed
+   * @return a new generator that uses the given seed
+   */
+  default Gen<T> seed(long seed) {
+    return Generated.of(this).seed(seed);
+  }
+
+  /**
+   * @param min the minimum value, inclusive
+   * @param max the maximum value, inclusive
+   * @return a generator of ints in the given range, shrinking towards zero
+   */
+  static IntGen ints(int min, int max) {
+    return IntGen.range(min, max);
+  }
+
+  /**
+   * @return a generator of any int, shrinking towards zero
+   */
+  static IntGen ints() {
+    return IntGen.range(Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param min the minimum value, inclusive
+   * @param max the maximum value, inclusive
+   * @return a generator of longs in the given range, shrinking towards zero
+   */
+  static LongGen longs(long min, long max) {
+    return LongGen.range(min, max);
+  }
+
+  /**
+   * @return a generator of any long, shrinking towards zero
+   */
+  static LongGen longs() {
+    return LongGen.range(Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  /**
+   * @param min the minimum value, inclusive
+   * @param max the maximum value, exclusive
+   * @return a generator of doubles in the given range, shrinking towards zero
+   */
+  static DoubleGen doubles(double min, double max) {
+    return DoubleGen.range(min, max);
+  }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.util.Iterator;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The supplier of a spec that was given a generator, holding how the generated
+ * objects are checked.
+ * <p>
+ * The trials are interleaved among a fixed number of lanes, each one with its
+ * own random generator split from the seed, and the lanes run in parallel. The
+ * failure with the lowest trial index is the one shrunk, so a seed always leads
+ * to the same counterexample no matter how many processors are available.
+ * <p>
+ * The generated objects are the target objects of the statements, so numbers
+ * are boxed once per trial and per shrink candidate, even by primitive
+ * generators.
+ *
+ * @param <T> the type of the generated objects
+ */
+final class Generated<T> implements Gen<T>, Supplier<T> {
+
+  private static final int DEFAULT_TRIALS = 1000;
+  private static final int LANES = 64;
+  private static final int SHRINK_LIMIT = 1000;
+
+  private final Gen<T> gen;
+  private final int trials;
+  private final Long seed;
+
+  private Generated(Gen<T> gen, int trials, Long seed) {
+    if (trials < 1) {
+      throw new IllegalArgumentException("Invalid trial count: " + trials);
+    }
+    this.gen = gen;
+    this.trials = trials;
+    this.seed = seed;
+  }
+
+  @Override
+  public T generate(SplittableRandom random) {
+    return gen.generate(random);
+  }
+
+  @Override
+  public Stream<T> shrink(T value) {
+    return gen.shrink(value);
+  }
+
+  @Override
+  public Gen<T> trials(int trials) {
+    return new Generated<>(gen, trials, seed);
+  }
+
+  @Override
+  public Gen<T> seed(long seed) {
+    return new Generated<>(gen, trials, seed);
+  }
+
+  /**
+   * @return a single generated object
+   */
+  @Override
+  public T get() {
+    return gen.generate(new SplittableRandom(seed != null ? seed : System.nanoTime()));
+  }
+
+  /**
+   * Checks the generated objects with the given trial.
+   *
+   * @param trial the function that checks an object, returning the failure or
+   *              {@code null} if the object passes
+   * @return the shrunk counterexample, or {@code null} if all objects passed
+   */
+  Counterexample<T> check(Function<? super T, Throwable> trial) {
+    long runSeed = seed != null ? seed : System.nanoTime();
+    SplittableRandom root = new SplittableRandom(runSeed);
+    int lanes = Math.min(trials, LANES);
+    SplittableRandom[] randoms = new SplittableRandom[lanes];
+    for (int i = 0; i < lanes; i++) {
+      randoms[i] = root.split();
+    }
+    AtomicReference<Counterexample<T>> found = new AtomicReference<>();
+
+    IntStream.range(0, lanes).parallel().forEach(lane -> {
+      SplittableRandom random = randoms[lane];
+      for (int index = lane; index < trials; index += lanes) {
+        Counterexample<T> lowest = found.get();
+        if (lowest != null && lowest.trial < index) {
+          return;
+        }
+        T value = next(random);
+        Throwable failure = trial.apply(value);
+        if (failure != null) {
+          Counterexample<T> counterexample = new Counterexample<>(value, failure, runSeed, index, 0);
+          found.accumulateAndGet(counterexample,
+              (current, candidate) -> current == null || candidate.trial < current.trial ? candidate : current);
+          return;
+        }
+      }
+    });
+
+    Counterexample<T> counterexample = found.get();
+    return counterexample == null ? null : shrink(counterexample, trial);
+  }
+
+  private Counterexample<T> shrink(Counterexample<T> counterexample, Function<? super T, Throwable> trial) {
+    T value = counterexample.value;
+    Throwable failure = counterexample.failure;
+    int shrinks = 0;
+    boolean shrunk = true;
+    while (shrunk && shrinks < SHRINK_LIMIT) {
+      shrunk = false;
+      Iterator<T> candidates = candidates(value);
+      while (candidates.hasNext()) {
+        T candidate = candidates.next();
+        Throwable candidateFailure = trial.apply(candidate);
+        if (candidateFailure != null) {
+          value = candidate;
+          failure = candidateFailure;
+          shrinks++;
+          shrunk = true;
+          break;
+        }
+      }
+    }
+    return new Counterexample<>(value, failure, counterexample.seed, counterexample.trial, shrinks);
+  }
+
+  /**
+   * Generates the next object of a trial. Primitive generators produce the
+   * value through their primitive method, so it's boxed only when handed to
+   * the statement, which takes objects.
+   */
+  @SuppressWarnings("unchecked")
+  private T next(SplittableRandom random) {
+    if (gen instanceof IntGen) {
+      return (T) Integer.valueOf(((IntGen) gen).generateInt(random));
+    }
+    if (gen instanceof LongGen) {
+      return (T) Long.valueOf(((LongGen) gen).generateLong(random));
+    }
+    if (gen instanceof DoubleGen) {
+      return (T) Double.valueOf(((DoubleGen) gen).generateDouble(random));
+    }
+    return gen.generate(random);
+  }
+
+  /**
+   * Returns the shrink candidates of the given object. Primitive generators
+   * shrink through their primitive streams and the candidates are boxed one at
+   * a time, as they are tried.
+   */
+  @SuppressWarnings("unchecked")
+  private Iterator<T> candidates(T value) {
+    if (gen instanceof IntGen) {
+      return (Iterator<T>) ((IntGen) gen).shrinkInt((Integer) value).mapToObj(Integer::valueOf).iterator();
+    }
+    if (gen instanceof LongGen) {
+      return (Iterator<T>) ((LongGen) gen).shrinkLong((Long) value).mapToObj(Long::valueOf).iterator();
+    }
+    if (gen instanceof DoubleGen) {
+      return (Iterator<T>) ((DoubleGen) gen).shrinkDouble((Double) value).mapToObj(Double::valueOf).iterator();
+    }
+    return gen.shrink(value).iterator();
+  }
+
+  /**
+   * @param gen the generator
+   * @return the given generator, if it's already a Generated, or a new Generated
+   * with the default trials
+   */
+  static <T> Generated<T> of(Gen<T> gen) {
+    return gen instanceof Generated ? (Generated<T>) gen : new Generated<>(gen, DEFAULT_TRIALS, null);
+  }
+
+  /**
+   * A generated object that didn't follow a statement.
+   */
+  static final class Counterexample<T> {
+
+    private final T value;
+    private final Throwable failure;
+    private final long seed;
+    private final int trial;
+    private final int shrinks;
+
+    private Counterexample(T value, Throwable failure, long seed, int trial, int shrinks) {
+      this.value = value;
+      this.failure = failure;
+      this.seed = seed;
+      this.trial = trial;
+      this.shrinks = shrinks;
+    }
+
+    /**
+     * @return the failure of the statement for this counterexample
+     */
+    Throwable failure() {
+      return failure;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("counterexample: %s, seed=%d, trial %d, shrunk %d times", value, seed, trial, shrinks);
+    }
+
+  }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size histogram of non negative long values (usually nanoseconds).
+ * <p>
+ * Values are recorded in log-linear buckets that keep a relative error below
+ * 2^-5 (around 3%), so recording a value never allocates and the memory used
+ * by the histogram doesn't depend on how many values were recorded.
+ * <p>
+ * Instances are not thread safe.
+ */
+public final class Histogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+  static final int SIZE = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final long[] counts = new long[SIZE];
+  private long count;
+  private long min = Long.MAX_VALUE;
+  private long max;
+  private double sum;
+
+  /**
+   * Records the given value. Negative values are recorded as zero.
+   *
+   * @param value the value to record
+   */
+  public void record(long value) {
+    long v = Math.max(0, value);
+    counts[indexOf(v)]++;
+    count++;
+    sum += v;
+    if (v < min) {
+      min = v;
+    }
+    if (v > max) {
+      max = v;
+    }
+  }
+
+  /**
+   * Adds all values recorded by the given histogram to this one.
+   *
+   * @param other the histogram to add
+   */
+  public void add(Histogram other) {
+    for (int i = 0; i < SIZE; i++) {
+      counts[i] += other.counts[i];
+    }
+    count += other.count;
+    sum += other.sum;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  /**
+   * Discards all recorded values.
+   */
+  public void reset() {
+    Arrays.fill(counts, 0);
+    count = 0;
+    sum = 0;
+    min = Long.MAX_VALUE;
+    max = 0;
+  }
+
+  /**
+   * @return how many values were recorded
+   */
+  public long count() {
+    return count;
+  }
+
+  /**
+   * @return the lowest recorded value or zero if nothing was recorded
+   */
+  public long min() {
+    return count == 0 ? 0 : min;
+  }
+
+  /**
+   * @return the highest recorded value
+   */
+  public long max() {
+    return max;
+  }
+
+  /**
+   * @return the mean of the recorded values
+   */
+  public double mean() {
+    return count == 0 ? 0 : sum / count;
+  }
+
+  /**
+   * Returns the value at the given percentile. The value is the highest one
+   * that is equivalent to the bucket the percentile falls into, so it never
+   * underestimates the recorded values.
+   *
+   * @param percentile the percentile, from 0 to 100
+   * @return the value at the given percentile or zero if nothing was recorded
+   */
+  public long percentile(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Invalid percentile: " + percentile);
+    }
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < SIZE; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(max, highestValueAt(i));
+      }
+    }
+    return max;
+  }
+
+  /**
+   * @param index the index of a bucket
+   * @return how many values were recorded in the given bucket
+   */
+  long countAt(int index) {
+    return counts[index];
+  }
+
+  /**
+   * Records the given number of values in the given bucket, as if they were the
+   * highest value of the bucket.
+   *
+   * @param index the index of the bucket
+   * @param n     how many values to record
+   */
+  void restore(int index, long n) {
+    long value = highestValueAt(index);
+    counts[index] += n;
+    count += n;
+    sum += (double) value * n;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  static int indexOf(long value) {
+    if (value < LINEAR_LIMIT) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    int top = (int) (value >>> shift);
+    return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (top - SUB_BUCKETS);
+  }
+
+  static long highestValueAt(int index) {
+    if (index < LINEAR_LIMIT) {
+      return index;
+    }
+    int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+    long top = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+    if (shift + SUB_BUCKET_BITS + 1 >= 63) {
+      return Long.MAX_VALUE;
+    }
+    return ((top + 1) << shift) - 1;
+  }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A generator of ints. Specs generate and shrink the values through the
+ * primitive methods, and box each value only when it's given to a statement as
+ * the target object.
+ */
+@FunctionalInterface
+public interface IntGen extends Gen<Integer> {
+
+  /**
+   * Generates a new value.
+   *
+   * @param random the source of randomness
+   * @return the generated value
+   */
+  int generateInt(SplittableRandom random);
+
+  /**
+   * Returns simpler versions of the given value, the simplest first. The default
+   * implementation doesn't shrink values.
+   *
+   * @param value the value to shrink
+   * @return the simpler versions of the value
+   */
+  default IntStream shrinkInt(int value) {
+    return IntStream.empty();
+  }
+
+  @Override
+  default Integer generate(SplittableRandom random) {
+    return generateInt(random);
+  }
+
+  @Override
+  default Stream<Integer> shrink(Integer value) {
+    return shrinkInt(value).boxed();
+  }
+
+  /**
+   * Creates a generator of objects built from the values generated by this one.
+   * The objects are not shrunk.
+   *
+   * @param mapper the function to build the objects
+   * @return a new generator
+   */
+  default <T> Gen<T> mapToObj(IntFunction<? extends T> mapper) {
+    return random -> mapper.apply(generateInt(random));
+  }
+
+  /**
+   * Creates a generator of ints in the given range. Besides random values, the
+   * bounds and the value closest to zero are generated more often, and values
+   * shrink towards the one closest to zero.
+   *
+   * @param min the minimum value, inclusive
+   * @param max the maximum value, inclusive
+   * @return a new generator
+   */
+  static IntGen range(int min, int max) {
+    if (min > max) {
+      throw new IllegalArgumentException("Invalid range: " + min + ".." + max);
+    }
+    int origin = Math.max(min, Math.min(max, 0));
+    return new IntGen() {
+      @Override
+      public int generateInt(SplittableRandom random) {
+        switch (random.nextInt(16)) {
+          case 0:
+            return min;
+          case 1:
+            return max;
+          case 2:
+            return origin;
+          default:
+            return (int) random.nextLong(min, (long) max + 1);
+        }
+      }
+
+      @Override
+      public IntStream shrinkInt(int value) {
+        return LongGen.towards(origin, value).mapToInt(candidate -> (int) candidate);
+      }
+    };
+  }
+
+}
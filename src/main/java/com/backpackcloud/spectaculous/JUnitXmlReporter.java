@@ -0,0 +1,145 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A reporter that writes a JUnit XML report, understood by most CI servers.
+ * Each scenario becomes a test suite and each statement becomes a test case.
+ * The report is written when the JVM shuts down.
+ */
+public final class JUnitXmlReporter implements Reporter {
+
+  private final Path file;
+  private final Map<String, List<Event>> suites = new LinkedHashMap<>();
+
+  /**
+   * Creates a reporter that writes to the given file, replacing it.
+   *
+   * @param file the file to write to
+   */
+  public JUnitXmlReporter(Path file) {
+    this.file = file;
+  }
+
+  @Override
+  public void report(Event event) {
+    suites.computeIfAbsent(event.scenario(), scenario -> new ArrayList<>()).add(event);
+  }
+
+  @Override
+  public void close() {
+    try {
+      Files.createDirectories(file.toAbsolutePath().getParent());
+      try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        writer.newLine();
+        writer.write("<testsuites>");
+        writer.newLine();
+        for (Map.Entry<String, List<Event>> suite : suites.entrySet()) {
+          write(writer, suite.getKey(), suite.getValue());
+        }
+        writer.write("</testsuites>");
+        writer.newLine();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void write(BufferedWriter writer, String scenario, List<Event> events) throws IOException {
+    long failures = events.stream().filter(event -> !event.passed()).count();
+    long nanos = events.stream().mapToLong(Event::nanos).sum();
+    writer.write(String.format(Locale.ROOT, "  <testsuite name=\"%s\" tests=\"%d\" failures=\"%d\" time=\"%s\">",
+        escape(scenario), events.size(), failures, seconds(nanos)));
+    writer.newLine();
+    int index = 0;
+    for (Event event : events) {
+      index++;
+      String name = event.reason().isEmpty()
+          ? String.format(Locale.ROOT, "%d. %s", index, event.kind())
+          : String.format(Locale.ROOT, "%d. %s", index, event.reason());
+      writer.write(String.format(Locale.ROOT, "    <testcase classname=\"%s\" name=\"%s\" time=\"%s\"",
+          escape(scenario), escape(name), seconds(event.nanos())));
+      if (event.passed()) {
+        writer.write("/>");
+      } else {
+        writer.write(">");
+        writer.newLine();
+        writer.write(String.format("      <failure message=\"%s\"/>", escape(event.failure().toString())));
+        writer.newLine();
+        writer.write("    </testcase>");
+      }
+      writer.newLine();
+    }
+    writer.write("  </testsuite>");
+    writer.newLine();
+  }
+
+  private static String seconds(long nanos) {
+    return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+  }
+
+  static String escape(String value) {
+    StringBuilder escaped = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '&':
+          escaped.append("&amp;");
+          break;
+        case '<':
+          escaped.append("&lt;");
+          break;
+        case '>':
+          escaped.append("&gt;");
+          break;
+        case '"':
+          escaped.append("&quot;");
+          break;
+        case '\n':
+          escaped.append("&#10;");
+          break;
+        default:
+          if (c >= 0x20 || c == '\t') {
+            escaped.append(c);
+          }
+      }
+    }
+    return escaped.toString();
+  }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * A measure that times an operation and checks a percentile of its latency
+ * against a budget.
+ * <p>
+ * The operation runs a number of warmup iterations before the measured ones.
+ * Each measured iteration is timed with {@link System#nanoTime()} and recorded
+ * in a {@link Histogram}, so the measurement loop doesn't allocate anything
+ * besides what the operation itself allocates.
+ */
+public final class Latency implements Measure {
+
+  private static volatile Object sink;
+
+  private final Duration budget;
+  private final double percentile;
+  private final int warmup;
+  private final int iterations;
+
+  private Latency(Duration budget, double percentile, int warmup, int iterations) {
+    if (budget.isNegative()) {
+      throw new IllegalArgumentException("Invalid budget: " + budget);
+    }
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Invalid percentile: " + percentile);
+    }
+    if (warmup < 0 || iterations < 1) {
+      throw new IllegalArgumentException("Invalid iteration count");
+    }
+    this.budget = budget;
+    this.percentile = percentile;
+    this.warmup = warmup;
+    this.iterations = iterations;
+  }
+
+  /**
+   * Sets the percentile that should be within the budget. Defaults to 99.
+   *
+   * @param percentile the percentile, from 0 to 100
+   * @return a new Latency that checks the given percentile
+   */
+  public Latency percentile(double percentile) {
+    return new Latency(budget, percentile, warmup, iterations);
+  }
+
+  /**
+   * Sets how many times the operation runs before being measured. Defaults to 100.
+   *
+   * @param warmup the number of warmup iterations
+   * @return a new Latency that uses the given warmup
+   */
+  public Latency warmup(int warmup) {
+    return new Latency(budget, percentile, warmup, iterations);
+  }
+
+  /**
+   * Sets how many times the operation runs while being measured. Defaults to 1000.
+   *
+   * @param iterations the number of measured iterations
+   * @return a new Latency that uses the given iterations
+   */
+  public Latency iterations(int iterations) {
+    return new Latency(budget, percentile, warmup, iterations);
+  }
+
+  @Override
+  public <T> Result measure(T target, Operation<? super T, ?> operation) throws Throwable {
+    Object result = null;
+    for (int i = 0; i < warmup; i++) {
+      result = operation.execute(target);
+    }
+    Histogram histogram = new Histogram();
+    for (int i = 0; i < iterations; i++) {
+      long start = System.nanoTime();
+      result = operation.execute(target);
+      histogram.record(System.nanoTime() - start);
+    }
+    sink = result;
+    long limit = budget.toNanos();
+    return Result.of(histogram.percentile(percentile) <= limit, String.format(Locale.ROOT,
+        "p50=%s, p99=%s, max=%s, budget p%s=%s",
+        format(histogram.percentile(50)),
+        format(histogram.percentile(99)),
+        format(histogram.max()),
+        formatPercentile(percentile),
+        format(limit)));
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT, "p%s within %s", formatPercentile(percentile), format(budget.toNanos()));
+  }
+
+  /**
+   * Creates a Latency that requires the 99th percentile to be within the given budget.
+   *
+   * @param budget the latency budget
+   * @return a new Latency
+   */
+  public static Latency within(Duration budget) {
+    return new Latency(budget, 99, 100, 1000);
+  }
+
+  static String formatPercentile(double percentile) {
+    return percentile == Math.rint(percentile)
+        ? String.valueOf((long) percentile)
+        : String.valueOf(percentile);
+  }
+
+  static String format(long nanos) {
+    if (nanos < 1_000) {
+      return nanos + "ns";
+    }
+    if (nanos < 1_000_000) {
+      return String.format(Locale.ROOT, "%.1fµs", nanos / 1e3);
+    }
+    if (nanos < 1_000_000_000) {
+      return String.format(Locale.ROOT, "%.1fms", nanos / 1e6);
+    }
+    return String.format(Locale.ROOT, "%.2fs", nanos / 1e9);
+  }
+
+}
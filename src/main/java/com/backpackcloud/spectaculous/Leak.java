@@ -0,0 +1,270 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A measure that runs an operation many times and checks that it doesn't leak
+ * process resources: live threads, open file descriptors and direct memory.
+ * <p>
+ * The resources are sampled after a few warmup runs, so resources that are
+ * created once, like pools and caches, are not taken as leaks. After the
+ * measured runs, the resources may take a while to be released, like threads
+ * that end after being told to or direct buffers that are freed only when
+ * they are collected, so they are sampled again, with a garbage collection
+ * between the samples, until they are within the tolerances or the grace
+ * period expires.
+ * <p>
+ * Threads are counted only if they were started during the measured runs and
+ * are still alive. File descriptors are counted through {@code /proc/self/fd}
+ * on Linux or the {@code com.sun.management.UnixOperatingSystemMXBean}, and
+ * are not checked if neither is supported. Direct memory is read from the
+ * {@code direct} {@link BufferPoolMXBean}.
+ */
+public final class Leak implements Measure {
+
+  private static final Path FILE_DESCRIPTORS = Paths.get("/proc/self/fd");
+  private static final long POLL_MILLIS = 10;
+  private static final int REPORTED_THREADS = 5;
+
+  private static volatile Object sink;
+
+  private final int warmup;
+  private final int iterations;
+  private final int threads;
+  private final int fileDescriptors;
+  private final long directMemory;
+  private final Duration grace;
+
+  private Leak(int warmup, int iterations, int threads, int fileDescriptors, long directMemory, Duration grace) {
+    if (warmup < 0 || iterations < 1) {
+      throw new IllegalArgumentException("Invalid iteration count");
+    }
+    if (threads < 0 || fileDescriptors < 0 || directMemory < 0) {
+      throw new IllegalArgumentException("Invalid tolerance");
+    }
+    if (grace.isNegative()) {
+      throw new IllegalArgumentException("Invalid grace period: " + grace);
+    }
+    this.warmup = warmup;
+    this.iterations = iterations;
+    this.threads = threads;
+    this.fileDescriptors = fileDescriptors;
+    this.directMemory = directMemory;
+    this.grace = grace;
+  }
+
+  /**
+   * Sets how many times the operation runs before the resources are sampled. Defaults to 10.
+   *
+   * @param warmup the number of warmup iterations
+   * @return a new Leak that uses the given warmup
+   */
+  public Leak warmup(int warmup) {
+    return new Leak(warmup, iterations, threads, fileDescriptors, directMemory, grace);
+  }
+
+  /**
+   * Sets how many times the operation runs while being measured. Defaults to 100.
+   *
+   * @param iterations the number of measured iterations
+   * @return a new Leak that uses the given iterations
+   */
+  public Leak iterations(int iterations) {
+    return new Leak(warmup, iterations, threads, fileDescriptors, directMemory, grace);
+  }
+
+  /**
+   * Sets how many of the threads started by the measured runs may still be
+   * alive. Defaults to 0.
+   *
+   * @param threads the tolerated number of threads
+   * @return a new Leak that uses the given tolerance
+   */
+  public Leak threads(int threads) {
+    return new Leak(warmup, iterations, threads, fileDescriptors, directMemory, grace);
+  }
+
+  /**
+   * Sets how many more file descriptors may be open after the measured runs.
+   * Defaults to 0.
+   *
+   * @param fileDescriptors the tolerated number of file descriptors
+   * @return a new Leak that uses the given tolerance
+   */
+  public Leak fileDescriptors(int fileDescriptors) {
+    return new Leak(warmup, iterations, threads, fileDescriptors, directMemory, grace);
+  }
+
+  /**
+   * Sets how many more bytes of direct memory may be used after the measured
+   * runs. Defaults to 0.
+   *
+   * @param bytes the tolerated direct memory, in bytes
+   * @return a new Leak that uses the given tolerance
+   */
+  public Leak directMemory(long bytes) {
+    return new Leak(warmup, iterations, threads, fileDescriptors, bytes, grace);
+  }
+
+  /**
+   * Sets how long the resources have to be released after the measured runs.
+   * Defaults to 1 second.
+   *
+   * @param grace the grace period
+   * @return a new Leak that uses the given grace period
+   */
+  public Leak grace(Duration grace) {
+    return new Leak(warmup, iterations, threads, fileDescriptors, directMemory, grace);
+  }
+
+  @Override
+  public <T> Result measure(T target, Operation<? super T, ?> operation) throws Throwable {
+    Object result = null;
+    for (int i = 0; i < warmup; i++) {
+      result = operation.execute(target);
+    }
+    System.gc();
+    Usage before = new Usage(null);
+
+    for (int i = 0; i < iterations; i++) {
+      result = operation.execute(target);
+    }
+    sink = result;
+
+    long deadline = System.nanoTime() + grace.toNanos();
+    Usage after = new Usage(before);
+    while (!within(before, after) && System.nanoTime() < deadline) {
+      System.gc();
+      Thread.sleep(POLL_MILLIS);
+      after = new Usage(before);
+    }
+
+    String descriptors = before.fileDescriptors < 0
+        ? "not supported"
+        : String.format(Locale.ROOT, "%+d", after.fileDescriptors - before.fileDescriptors);
+    long direct = after.directMemory - before.directMemory;
+    String report = String.format(Locale.ROOT,
+        "after %d runs: %s, file descriptors %s, direct memory %s%s (tolerance: %d threads, %d file descriptors, %s)",
+        iterations, started(after.started), descriptors, direct < 0 ? "-" : "+", Allocation.format(Math.abs(direct)),
+        threads, fileDescriptors, Allocation.format(directMemory));
+    return Result.of(within(before, after), report);
+  }
+
+  @Override
+  public String toString() {
+    return "no leaked threads, file descriptors or direct memory";
+  }
+
+  private boolean within(Usage before, Usage after) {
+    return after.started.size() <= threads
+        && after.fileDescriptors - before.fileDescriptors <= fileDescriptors
+        && after.directMemory - before.directMemory <= directMemory;
+  }
+
+  private static String started(List<String> started) {
+    if (started.isEmpty()) {
+      return "no threads started";
+    }
+    String names = started.stream().limit(REPORTED_THREADS).collect(Collectors.joining(", "));
+    return String.format(Locale.ROOT, "%d threads started (%s%s)",
+        started.size(), names, started.size() > REPORTED_THREADS ? ", ..." : "");
+  }
+
+  /**
+   * The resources used by the process at some point.
+   */
+  private static final class Usage {
+
+    private final Set<Long> threads;
+    private final List<String> started;
+    private final long fileDescriptors;
+    private final long directMemory;
+
+    private Usage(Usage before) throws IOException {
+      Set<Thread> live = Thread.getAllStackTraces().keySet();
+      this.threads = new HashSet<>();
+      for (Thread thread : live) {
+        threads.add(thread.getId());
+      }
+      this.started = live.stream()
+          .filter(thread -> before != null && !before.threads.contains(thread.getId()))
+          .map(Thread::getName)
+          .sorted()
+          .collect(Collectors.toList());
+      this.fileDescriptors = before == null || before.fileDescriptors >= 0 ? fileDescriptors() : -1;
+      this.directMemory = directMemory();
+    }
+
+    private static long fileDescriptors() throws IOException {
+      if (Files.isDirectory(FILE_DESCRIPTORS)) {
+        try (Stream<Path> files = Files.list(FILE_DESCRIPTORS)) {
+          // the stream opens a descriptor by itself
+          return files.count() - 1;
+        }
+      }
+      OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+      if (bean instanceof com.sun.management.UnixOperatingSystemMXBean) {
+        return ((com.sun.management.UnixOperatingSystemMXBean) bean).getOpenFileDescriptorCount();
+      }
+      return -1;
+    }
+
+    private static long directMemory() {
+      for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+        if (pool.getName().equals("direct")) {
+          return pool.getMemoryUsed();
+        }
+      }
+      return 0;
+    }
+
+  }
+
+  /**
+   * Creates a Leak that requires the operation to release every thread, file
+   * descriptor and direct buffer it creates.
+   *
+   * @return a new Leak
+   */
+  public static Leak none() {
+    return new Leak(10, 100, 0, 0, 0, Duration.ofSeconds(1));
+  }
+
+}
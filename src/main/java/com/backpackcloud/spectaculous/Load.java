@@ -0,0 +1,433 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A workload that fires an action at the target at a given arrival rate, which
+ * may be constant, ramp up or down, or grow in steps, and checks the latency
+ * at a percentile and the error rate.
+ * <p>
+ * Unlike a {@link Throughput}, callers don't wait for an action to complete
+ * before firing the next one: each action has an intended start time, taken
+ * from the arrival rate, and its latency is measured from that time. When the
+ * target falls behind, the actions start late and the time they spent waiting
+ * is part of their latency, so the latencies are not hidden by coordinated
+ * omission. Each caller records into its own {@link Histogram}, and the
+ * histograms are added once the run is over.
+ * <p>
+ * Actions that throw an exception are counted as errors, and their latencies
+ * are recorded as well. If the target falls so far behind that the run takes
+ * twice as long as planned, the remaining actions are not fired and are
+ * recorded with the time they had already waited.
+ * <p>
+ * Callers park until the intended start times, so the latencies include how
+ * late the operating system wakes them up, which can reach a millisecond.
+ */
+public final class Load implements Workload {
+
+  private final Profile profile;
+  private final Duration duration;
+  private final Duration warmup;
+  private final int threads;
+  private final boolean virtual;
+  private final double percentile;
+  private final long budget;
+  private final double errorRate;
+
+  private Load(Profile profile, Duration duration, Duration warmup, int threads, boolean virtual,
+               double percentile, long budget, double errorRate) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Invalid thread count: " + threads);
+    }
+    if (duration.isNegative() || duration.isZero() || warmup.isNegative()) {
+      throw new IllegalArgumentException("Invalid duration");
+    }
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Invalid percentile: " + percentile);
+    }
+    if (errorRate < 0 || errorRate > 1) {
+      throw new IllegalArgumentException("Invalid error rate: " + errorRate);
+    }
+    this.profile = profile;
+    this.duration = duration;
+    this.warmup = warmup;
+    this.threads = threads;
+    this.virtual = virtual;
+    this.percentile = percentile;
+    this.budget = budget;
+    this.errorRate = errorRate;
+  }
+
+  /**
+   * Sets for how long the actions are fired. Defaults to 1 second.
+   *
+   * @param duration the measurement duration
+   * @return a new Load that uses the given duration
+   */
+  public Load during(Duration duration) {
+    return new Load(profile, duration, warmup, threads, virtual, percentile, budget, errorRate);
+  }
+
+  /**
+   * Sets for how long the actions are fired at the initial rate before being
+   * measured. Defaults to 200 milliseconds.
+   *
+   * @param warmup the warmup duration
+   * @return a new Load that uses the given warmup
+   */
+  public Load warmup(Duration warmup) {
+    return new Load(profile, duration, warmup, threads, virtual, percentile, budget, errorRate);
+  }
+
+  /**
+   * Sets how many callers fire the actions, which is how many actions can run
+   * at the same time. Defaults to the number of available processors.
+   *
+   * @param threads the number of callers
+   * @return a new Load that uses the given number of callers
+   */
+  public Load threads(int threads) {
+    return new Load(profile, duration, warmup, threads, virtual, percentile, budget, errorRate);
+  }
+
+  /**
+   * Uses virtual threads for the callers if the runtime supports them.
+   *
+   * @return a new Load that uses virtual threads
+   */
+  public Load virtualThreads() {
+    return new Load(profile, duration, warmup, threads, true, percentile, budget, errorRate);
+  }
+
+  /**
+   * Sets the latency budget at the 99.9th percentile.
+   *
+   * @param budget the maximum latency at the 99.9th percentile
+   * @return a new Load that uses the given budget
+   */
+  public Load latency(Duration budget) {
+    return latency(99.9, budget);
+  }
+
+  /**
+   * Sets the latency budget at the given percentile. There is no latency
+   * budget by default.
+   *
+   * @param percentile the percentile, from 0 to 100
+   * @param budget     the maximum latency at the given percentile
+   * @return a new Load that uses the given budget
+   */
+  public Load latency(double percentile, Duration budget) {
+    return new Load(profile, duration, warmup, threads, virtual, percentile, budget.toNanos(), errorRate);
+  }
+
+  /**
+   * Sets the fraction of the actions that may fail. Defaults to 0.
+   *
+   * @param errorRate the tolerated error rate, from 0 to 1
+   * @return a new Load that uses the given error rate
+   */
+  public Load errorRate(double errorRate) {
+    return new Load(profile, duration, warmup, threads, virtual, percentile, budget, errorRate);
+  }
+
+  @Override
+  public <T> Measure.Result drive(T target, TargetedAction<? super T> action) throws Throwable {
+    long warmupNanos = warmup.toNanos();
+    long length = warmupNanos + duration.toNanos();
+    Schedule schedule = new Schedule(profile, warmupNanos, duration.toNanos());
+    Caller[] callers = new Caller[threads];
+    Thread[] workers = new Thread[threads];
+    ThreadFactory factory = Threads.factory("spectaculous-load-", virtual);
+    CountDownLatch go = new CountDownLatch(1);
+    long[] origin = new long[1];
+
+    for (int i = 0; i < threads; i++) {
+      Caller caller = new Caller();
+      callers[i] = caller;
+      workers[i] = factory.newThread(() -> {
+        try {
+          go.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        long start = origin[0];
+        long cutoff = start + 2 * length;
+        for (long offset = schedule.next(); offset >= 0; offset = schedule.next()) {
+          long intended = start + offset;
+          boolean measured = offset >= warmupNanos;
+          for (long delay = intended - System.nanoTime(); delay > 0; delay = intended - System.nanoTime()) {
+            LockSupport.parkNanos(delay);
+          }
+          if (System.nanoTime() > cutoff) {
+            caller.skipped++;
+            caller.histogram.record(System.nanoTime() - intended);
+            continue;
+          }
+          try {
+            action.run(target);
+          } catch (Throwable e) {
+            if (measured) {
+              caller.errors++;
+              if (caller.error == null) {
+                caller.error = e;
+              }
+            }
+          }
+          if (measured) {
+            caller.histogram.record(System.nanoTime() - intended);
+          }
+        }
+      });
+      workers[i].start();
+    }
+    origin[0] = System.nanoTime();
+    go.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    Histogram histogram = new Histogram();
+    long failed = 0;
+    long skipped = 0;
+    Throwable error = null;
+    for (Caller caller : callers) {
+      histogram.add(caller.histogram);
+      failed += caller.errors;
+      skipped += caller.skipped;
+      if (error == null) {
+        error = caller.error;
+      }
+    }
+
+    long count = histogram.count();
+    long latency = histogram.percentile(percentile);
+    double errors = count == 0 ? 0 : (double) failed / count;
+    boolean accepted = latency <= budget && errors <= errorRate && skipped == 0;
+    return Measure.Result.of(accepted, report(count, latency, failed, skipped, error, histogram.max()));
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT, "%s%s, error rate at most %s",
+        profile,
+        budget == Long.MAX_VALUE ? "" : String.format(Locale.ROOT, ", p%s at most %s",
+            Latency.formatPercentile(percentile), Latency.format(budget)),
+        percent(errorRate));
+  }
+
+  private String report(long count, long latency, long errors, long skipped, Throwable error, long max) {
+    StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+        "%d actions at %s from %d %s threads, p%s=%s", count, profile, threads,
+        virtual && Threads.virtualThreadsSupported() ? "virtual" : "platform",
+        Latency.formatPercentile(percentile), Latency.format(latency)));
+    if (budget != Long.MAX_VALUE) {
+      report.append(" (budget ").append(Latency.format(budget)).append(')');
+    }
+    report.append(", max=").append(Latency.format(max));
+    report.append(String.format(Locale.ROOT, ", errors=%d (%s, budget %s)",
+        errors, percent(count == 0 ? 0 : (double) errors / count), percent(errorRate)));
+    if (skipped > 0) {
+      report.append(String.format(Locale.ROOT, ", %d actions not fired because the target fell behind", skipped));
+    }
+    if (error != null) {
+      report.append(", first error: ").append(error);
+    }
+    return report.toString();
+  }
+
+  private static String percent(double rate) {
+    return String.format(Locale.ROOT, "%.2f%%", rate * 100);
+  }
+
+  /**
+   * Hands out the intended start times of the actions, relative to the start of
+   * the run, in order. The warmup fires at the initial rate.
+   * <p>
+   * The times are computed as the callers claim them, by advancing a clock
+   * shared by the callers with a single compare-and-set, so the memory doesn't
+   * grow with the number of actions.
+   */
+  private static final class Schedule {
+
+    private final Profile profile;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final long end;
+    // the bits of the next start time, as a double
+    private final AtomicLong clock = new AtomicLong(Double.doubleToRawLongBits(0));
+
+    private Schedule(Profile profile, long warmupNanos, long durationNanos) {
+      this.profile = profile;
+      this.warmupNanos = warmupNanos;
+      this.durationNanos = durationNanos;
+      this.end = warmupNanos + durationNanos;
+    }
+
+    /**
+     * @return the intended start time of the next action, or {@code -1} if
+     * there are no more actions to fire
+     */
+    long next() {
+      while (true) {
+        long bits = clock.get();
+        double t = Double.longBitsToDouble(bits);
+        if (t >= end) {
+          return -1;
+        }
+        if (clock.compareAndSet(bits, Double.doubleToRawLongBits(t + interval(t)))) {
+          return (long) t;
+        }
+      }
+    }
+
+    private double interval(double t) {
+      return 1e9 / profile.rate((long) Math.max(0, t - warmupNanos), durationNanos);
+    }
+
+  }
+
+  /**
+   * The state of a caller, which is only read once the caller is done.
+   */
+  private static final class Caller {
+
+    private final Histogram histogram = new Histogram();
+    private long errors;
+    private long skipped;
+    private Throwable error;
+
+  }
+
+  /**
+   * Defines the arrival rate over time.
+   */
+  private interface Profile {
+
+    /**
+     * @param elapsed  the time since the measurement started, in nanoseconds
+     * @param duration the duration of the measurement, in nanoseconds
+     * @return the arrival rate, in actions per second
+     */
+    double rate(long elapsed, long duration);
+
+  }
+
+  private static Load of(Profile profile) {
+    return new Load(profile, Duration.ofSeconds(1), Duration.ofMillis(200), Runtime.getRuntime().availableProcessors(),
+        false, 99.9, Long.MAX_VALUE, 0);
+  }
+
+  private static void checkRate(double rate) {
+    if (!(rate > 0) || Double.isInfinite(rate)) {
+      throw new IllegalArgumentException("Invalid rate: " + rate);
+    }
+  }
+
+  /**
+   * Creates a Load that fires the actions at a constant rate.
+   *
+   * @param perSecond the number of actions per second
+   * @return a new Load
+   */
+  public static Load constant(double perSecond) {
+    checkRate(perSecond);
+    return of(new Profile() {
+      @Override
+      public double rate(long elapsed, long duration) {
+        return perSecond;
+      }
+
+      @Override
+      public String toString() {
+        return String.format(Locale.ROOT, "%.0f/s", perSecond);
+      }
+    });
+  }
+
+  /**
+   * Creates a Load that fires the actions at a rate that changes linearly
+   * during the measurement, from the first rate to the second one.
+   *
+   * @param fromPerSecond the initial number of actions per second
+   * @param toPerSecond   the final number of actions per second
+   * @return a new Load
+   */
+  public static Load ramp(double fromPerSecond, double toPerSecond) {
+    checkRate(fromPerSecond);
+    checkRate(toPerSecond);
+    return of(new Profile() {
+      @Override
+      public double rate(long elapsed, long duration) {
+        return fromPerSecond + (toPerSecond - fromPerSecond) * Math.min(1, (double) elapsed / duration);
+      }
+
+      @Override
+      public String toString() {
+        return String.format(Locale.ROOT, "%.0f/s to %.0f/s", fromPerSecond, toPerSecond);
+      }
+    });
+  }
+
+  /**
+   * Creates a Load that fires the actions at a rate that grows by the given
+   * increment at every given period.
+   *
+   * @param fromPerSecond the initial number of actions per second
+   * @param stepPerSecond the increment of the number of actions per second
+   * @param every         the period between increments
+   * @return a new Load
+   */
+  public static Load steps(double fromPerSecond, double stepPerSecond, Duration every) {
+    checkRate(fromPerSecond);
+    if (stepPerSecond < 0 || Double.isInfinite(stepPerSecond)) {
+      throw new IllegalArgumentException("Invalid step: " + stepPerSecond);
+    }
+    if (every.isNegative() || every.isZero()) {
+      throw new IllegalArgumentException("Invalid duration");
+    }
+    long period = every.toNanos();
+    return of(new Profile() {
+      @Override
+      public double rate(long elapsed, long duration) {
+        return fromPerSecond + stepPerSecond * (elapsed / period);
+      }
+
+      @Override
+      public String toString() {
+        return String.format(Locale.ROOT, "%.0f/s + %.0f/s every %s",
+            fromPerSecond, stepPerSecond, Latency.format(period));
+      }
+    });
+  }
+
+}
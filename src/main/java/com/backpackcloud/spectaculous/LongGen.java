@@ -0,0 +1,140 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.util.SplittableRandom;
+import java.util.function.LongFunction;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * A generator of longs. Specs generate and shrink the values through the
+ * primitive methods, and box each value only when it's given to a statement as
+ * the target object.
+ */
+@FunctionalInterface
+public interface LongGen extends Gen<Long> {
+
+  /**
+   * Generates a new value.
+   *
+   * @param random the source of randomness
+   * @return the generated value
+   */
+  long generateLong(SplittableRandom random);
+
+  /**
+   * Returns simpler versions of the given value, the simplest first. The default
+   * implementation doesn't shrink values.
+   *
+   * @param value the value to shrink
+   * @return the simpler versions of the value
+   */
+  default LongStream shrinkLong(long value) {
+    return LongStream.empty();
+  }
+
+  @Override
+  default Long generate(SplittableRandom random) {
+    return generateLong(random);
+  }
+
+  @Override
+  default Stream<Long> shrink(Long value) {
+    return shrinkLong(value).boxed();
+  }
+
+  /**
+   * Creates a generator of objects built from the values generated by this one.
+   * The objects are not shrunk.
+   *
+   * @param mapper the function to build the objects
+   * @return a new generator
+   */
+  default <T> Gen<T> mapToObj(LongFunction<? extends T> mapper) {
+    return random -> mapper.apply(generateLong(random));
+  }
+
+  /**
+   * Creates a generator of longs in the given range. Besides random values, the
+   * bounds and the value closest to zero are generated more often, and values
+   * shrink towards the one closest to zero.
+   *
+   * @param min the minimum value, inclusive
+   * @param max the maximum value, inclusive
+   * @return a new generator
+   */
+  static LongGen range(long min, long max) {
+    if (min > max) {
+      throw new IllegalArgumentException("Invalid range: " + min + ".." + max);
+    }
+    long origin = Math.max(min, Math.min(max, 0));
+    return new LongGen() {
+      @Override
+      public long generateLong(SplittableRandom random) {
+        switch (random.nextInt(16)) {
+          case 0:
+            return min;
+          case 1:
+            return max;
+          case 2:
+            return origin;
+          default:
+            if (max < Long.MAX_VALUE) {
+              return random.nextLong(min, max + 1);
+            }
+            return min > Long.MIN_VALUE ? random.nextLong(min - 1, max) + 1 : random.nextLong();
+        }
+      }
+
+      @Override
+      public LongStream shrinkLong(long value) {
+        return towards(origin, value);
+      }
+    };
+  }
+
+  /**
+   * Returns the values between the origin and the given value, starting at the
+   * origin and halving the distance to the value each time.
+   *
+   * @param origin the simplest value
+   * @param value  the value to shrink
+   * @return the values between the origin and the value
+   */
+  static LongStream towards(long origin, long value) {
+    if (value == origin) {
+      return LongStream.empty();
+    }
+    long half = value / 2 - origin / 2;
+    return LongStream.concat(
+        LongStream.of(origin),
+        LongStream.iterate(half, distance -> distance / 2)
+            .takeWhile(distance -> distance != 0)
+            .map(distance -> value - distance)
+            .filter(candidate -> candidate != origin));
+  }
+
+}
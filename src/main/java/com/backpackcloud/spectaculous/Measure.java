@@ -0,0 +1,105 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+/**
+ * Defines a measure that an operation should satisfy, like a latency budget.
+ * <p>
+ * Measures are used by statements that are interested in how an operation
+ * behaves rather than in the result it produces.
+ */
+public interface Measure {
+
+  /**
+   * Measures the given operation.
+   *
+   * @param target    the target object
+   * @param operation the operation to measure
+   * @return the result of the measurement
+   * @throws Throwable if anything unexpected happens
+   */
+  <T> Result measure(T target, Operation<? super T, ?> operation) throws Throwable;
+
+  /**
+   * Measures the given operation on behalf of a statement. Measures that keep
+   * anything between runs, like a baseline, use the key to tell statements
+   * apart. The default implementation ignores the key.
+   *
+   * @param key       the key of the statement, made of the scenario, the reason and the position
+   *                  of the statement in the spec
+   * @param target    the target object
+   * @param operation the operation to measure
+   * @return the result of the measurement
+   * @throws Throwable if anything unexpected happens
+   */
+  default <T> Result measure(String key, T target, Operation<? super T, ?> operation) throws Throwable {
+    return measure(target, operation);
+  }
+
+  /**
+   * Defines the result of a measurement.
+   */
+  interface Result {
+
+    /**
+     * @return {@code true} if the measured operation satisfies the measure.
+     */
+    boolean accepted();
+
+    /**
+     * @return a short report of what was measured, used to compose the exception
+     * text in case of failure to follow the spec.
+     */
+    String report();
+
+    /**
+     * Creates a new Result.
+     *
+     * @param accepted if the measured operation satisfies the measure
+     * @param report   the report of the measurement
+     * @return a new Result
+     */
+    static Result of(boolean accepted, String report) {
+      return new Result() {
+        @Override
+        public boolean accepted() {
+          return accepted;
+        }
+
+        @Override
+        public String report() {
+          return report;
+        }
+
+        @Override
+        public String toString() {
+          return report;
+        }
+      };
+    }
+
+  }
+
+}
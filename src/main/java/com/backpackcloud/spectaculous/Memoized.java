@@ -0,0 +1,140 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.util.function.Supplier;
+
+/**
+ * A supplier that builds the target object once and keeps it until it's closed.
+ */
+abstract class Memoized<T> implements Supplier<T>, AutoCloseable {
+
+  final Supplier<? extends T> supplier;
+
+  private Memoized(Supplier<? extends T> supplier) {
+    this.supplier = supplier;
+  }
+
+  /**
+   * Releases the target object, closing it if it's an AutoCloseable.
+   */
+  @Override
+  public abstract void close();
+
+  static void close(Object target) {
+    if (target instanceof AutoCloseable) {
+      try {
+        ((AutoCloseable) target).close();
+      } catch (Exception e) {
+        throw new SpectacularException("Error while closing " + target, e);
+      }
+    }
+  }
+
+  /**
+   * Creates a Memoized that should be used by a single thread.
+   *
+   * @param supplier the supplier of the target object
+   * @return a new Memoized
+   */
+  static <T> Memoized<T> of(Supplier<? extends T> supplier) {
+    return new Memoized<T>(supplier) {
+
+      private T target;
+      private boolean built;
+
+      @Override
+      public T get() {
+        if (!built) {
+          target = this.supplier.get();
+          built = true;
+        }
+        return target;
+      }
+
+      @Override
+      public void close() {
+        if (built) {
+          T closing = target;
+          target = null;
+          built = false;
+          close(closing);
+        }
+      }
+    };
+  }
+
+  /**
+   * Creates a Memoized that can be shared by concurrent threads. The target
+   * object is built only once even if the threads ask for it at the same time.
+   *
+   * @param supplier the supplier of the target object
+   * @return a new Memoized
+   */
+  static <T> Memoized<T> concurrent(Supplier<? extends T> supplier) {
+    return new Memoized<T>(supplier) {
+
+      private volatile Holder<T> holder;
+
+      @Override
+      public T get() {
+        Holder<T> current = holder;
+        if (current == null) {
+          synchronized (this) {
+            current = holder;
+            if (current == null) {
+              current = new Holder<>(this.supplier.get());
+              holder = current;
+            }
+          }
+        }
+        return current.target;
+      }
+
+      @Override
+      public void close() {
+        Holder<T> closing;
+        synchronized (this) {
+          closing = holder;
+          holder = null;
+        }
+        if (closing != null) {
+          close(closing.target);
+        }
+      }
+    };
+  }
+
+  private static final class Holder<T> {
+
+    private final T target;
+
+    private Holder(T target) {
+      this.target = target;
+    }
+
+  }
+
+}
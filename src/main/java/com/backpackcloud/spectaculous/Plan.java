@@ -0,0 +1,128 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Holds the statements recorded by a plan.
+ * <p>
+ * The statements are split into segments, one for each target supplier given to
+ * the plan. Segments don't share target objects, so they run concurrently, while
+ * the statements of a segment run sequentially in the order they were recorded.
+ * A segment stops at its first failed statement, since the following ones may
+ * depend on it. If the thread running the plan is capturing events, the segments
+ * deliver theirs to the same reporter.
+ */
+final class Plan {
+
+  private final Executor executor;
+  private final Map<Object, Segment> segments = new IdentityHashMap<>();
+  private final List<Segment> order = new ArrayList<>();
+
+  Plan(Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Records a step in the segment of the given target supplier.
+   *
+   * @param supplier the target supplier
+   * @param step     the step to record
+   */
+  synchronized void record(Object supplier, Runnable step) {
+    segments.computeIfAbsent(supplier, key -> {
+      Segment segment = new Segment(key);
+      order.add(segment);
+      return segment;
+    }).steps.add(step);
+  }
+
+  /**
+   * @return how many segments were recorded
+   */
+  synchronized int size() {
+    return order.size();
+  }
+
+  /**
+   * Runs all the recorded segments and waits for them to finish. The recorded
+   * segments are discarded afterwards.
+   *
+   * @return what made each failed segment stop
+   */
+  List<Throwable> run() {
+    List<Segment> recorded;
+    synchronized (this) {
+      recorded = new ArrayList<>(order);
+      order.clear();
+      segments.clear();
+    }
+    List<CompletableFuture<Void>> futures = new ArrayList<>(recorded.size());
+    for (Segment segment : recorded) {
+      futures.add(CompletableFuture.runAsync(Reporting.propagate(segment), executor));
+    }
+    List<Throwable> failures = new ArrayList<>();
+    for (CompletableFuture<Void> future : futures) {
+      try {
+        future.join();
+      } catch (CompletionException e) {
+        failures.add(e.getCause());
+      }
+    }
+    return failures;
+  }
+
+  private static final class Segment implements Runnable {
+
+    private final Object supplier;
+    private final List<Runnable> steps = new ArrayList<>();
+
+    private Segment(Object supplier) {
+      this.supplier = supplier;
+    }
+
+    @Override
+    public void run() {
+      try {
+        for (Runnable step : steps) {
+          step.run();
+        }
+      } finally {
+        if (supplier instanceof Memoized) {
+          ((Memoized<?>) supplier).close();
+        }
+      }
+    }
+
+  }
+
+}
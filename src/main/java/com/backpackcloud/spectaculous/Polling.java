@@ -0,0 +1,149 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Defines how a statement is retried until it's followed or a deadline expires.
+ * <p>
+ * Between attempts, the thread is parked instead of spinning or sleeping inside a
+ * monitor, so waiting statements don't hold a carrier thread when running on
+ * virtual threads.
+ */
+public final class Polling {
+
+  private final Duration timeout;
+  private final Duration interval;
+  private final Duration maxInterval;
+  private final double backoff;
+  private final double jitter;
+
+  private Polling(Duration timeout, Duration interval, Duration maxInterval, double backoff, double jitter) {
+    if (timeout.isNegative() || interval.isNegative() || maxInterval.isNegative()) {
+      throw new IllegalArgumentException("Invalid duration");
+    }
+    if (backoff < 1) {
+      throw new IllegalArgumentException("Invalid backoff: " + backoff);
+    }
+    if (jitter < 0 || jitter > 1) {
+      throw new IllegalArgumentException("Invalid jitter: " + jitter);
+    }
+    this.timeout = timeout;
+    this.interval = interval;
+    this.maxInterval = maxInterval;
+    this.backoff = backoff;
+    this.jitter = jitter;
+  }
+
+  /**
+   * Sets the interval between the first attempts. Defaults to 10 milliseconds.
+   *
+   * @param interval the interval between attempts
+   * @return a new Polling that uses the given interval
+   */
+  public Polling every(Duration interval) {
+    return new Polling(timeout, interval, maxInterval, backoff, jitter);
+  }
+
+  /**
+   * Makes the interval grow exponentially after each attempt. Defaults to 1, which
+   * keeps the interval constant.
+   *
+   * @param multiplier the multiplier applied to the interval after each attempt
+   * @return a new Polling that uses the given backoff
+   */
+  public Polling backoff(double multiplier) {
+    return new Polling(timeout, interval, maxInterval, multiplier, jitter);
+  }
+
+  /**
+   * Sets the maximum interval between attempts when using a backoff. Defaults to 1 second.
+   *
+   * @param maxInterval the maximum interval
+   * @return a new Polling that uses the given maximum interval
+   */
+  public Polling atMost(Duration maxInterval) {
+    return new Polling(timeout, interval, maxInterval, backoff, jitter);
+  }
+
+  /**
+   * Randomizes each interval by up to the given fraction, so concurrent waits don't
+   * poll in lockstep. Defaults to 0.
+   *
+   * @param fraction the fraction of the interval, from 0 to 1
+   * @return a new Polling that uses the given jitter
+   */
+  public Polling jitter(double fraction) {
+    return new Polling(timeout, interval, maxInterval, backoff, fraction);
+  }
+
+  /**
+   * @return the deadline of a wait that starts now, in {@link System#nanoTime()} units
+   */
+  long deadline() {
+    return System.nanoTime() + timeout.toNanos();
+  }
+
+  /**
+   * Parks the current thread until the next attempt.
+   *
+   * @param attempts how many attempts were made so far
+   * @param deadline the deadline of the wait
+   * @return {@code false} if there is no time left for another attempt
+   */
+  boolean await(int attempts, long deadline) {
+    long remaining = deadline - System.nanoTime();
+    if (remaining <= 0 || Thread.currentThread().isInterrupted()) {
+      return false;
+    }
+    double pause = Math.min(maxInterval.toNanos(), interval.toNanos() * Math.pow(backoff, attempts - 1));
+    if (jitter > 0) {
+      pause += pause * jitter * (ThreadLocalRandom.current().nextDouble() * 2 - 1);
+    }
+    long nanos = Math.min(remaining, (long) pause);
+    long end = System.nanoTime() + nanos;
+    for (long left = nanos; left > 0; left = end - System.nanoTime()) {
+      LockSupport.parkNanos(this, left);
+      if (Thread.currentThread().isInterrupted()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Creates a Polling that retries a statement for up to the given timeout.
+   *
+   * @param timeout the maximum time to wait for the statement to be followed
+   * @return a new Polling
+   */
+  public static Polling upTo(Duration timeout) {
+    return new Polling(timeout, Duration.ofMillis(10), Duration.ofSeconds(1), 1, 0);
+  }
+
+}
@@ -0,0 +1,299 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A measure that times an operation and compares its latency against a
+ * baseline recorded by a previous run, instead of an absolute budget.
+ * <p>
+ * The baselines are stored as histograms in a CSV file, meant to be committed
+ * along with the specs, keyed by the scenario, the reason and the position of
+ * the statement in the spec. The first run of a statement records its baseline. The following
+ * runs fail only if the latency is significantly higher than the baseline, by
+ * a one-sided Mann-Whitney U test, and the median regressed more than the
+ * tolerance. Set the system property {@value #UPDATE_PROPERTY} to {@code true}
+ * to record the current latencies as the new baseline.
+ */
+public final class Regression implements Measure {
+
+  /**
+   * System property that makes the statements record their latencies as the new baseline.
+   */
+  public static final String UPDATE_PROPERTY = "spectaculous.baseline.update";
+
+  private static final String HEADER = "key,buckets";
+  private static final Object LOCK = new Object();
+
+  private static volatile Object sink;
+
+  private final int warmup;
+  private final int iterations;
+  private final double significance;
+  private final double tolerance;
+  private final Path baseline;
+
+  private Regression(int warmup, int iterations, double significance, double tolerance, Path baseline) {
+    if (warmup < 0 || iterations < 1) {
+      throw new IllegalArgumentException("Invalid iteration count");
+    }
+    if (significance <= 0 || significance >= 1) {
+      throw new IllegalArgumentException("Invalid significance: " + significance);
+    }
+    if (tolerance < 0) {
+      throw new IllegalArgumentException("Invalid tolerance: " + tolerance);
+    }
+    this.warmup = warmup;
+    this.iterations = iterations;
+    this.significance = significance;
+    this.tolerance = tolerance;
+    this.baseline = baseline;
+  }
+
+  /**
+   * Sets how many times the operation runs before being measured. Defaults to 100.
+   *
+   * @param warmup the number of warmup iterations
+   * @return a new Regression that uses the given warmup
+   */
+  public Regression warmup(int warmup) {
+    return new Regression(warmup, iterations, significance, tolerance, baseline);
+  }
+
+  /**
+   * Sets how many times the operation runs while being measured. Defaults to 1000.
+   *
+   * @param iterations the number of measured iterations
+   * @return a new Regression that uses the given iterations
+   */
+  public Regression iterations(int iterations) {
+    return new Regression(warmup, iterations, significance, tolerance, baseline);
+  }
+
+  /**
+   * Sets the p-value below which a difference is significant. Defaults to 0.01.
+   *
+   * @param significance the significance level
+   * @return a new Regression that uses the given significance level
+   */
+  public Regression significance(double significance) {
+    return new Regression(warmup, iterations, significance, tolerance, baseline);
+  }
+
+  /**
+   * Sets the tolerated regression of the median, as a fraction of the baseline
+   * median. Defaults to 0.05.
+   *
+   * @param tolerance the tolerated regression
+   * @return a new Regression that uses the given tolerance
+   */
+  public Regression tolerance(double tolerance) {
+    return new Regression(warmup, iterations, significance, tolerance, baseline);
+  }
+
+  /**
+   * Sets the file that stores the baselines. Defaults to
+   * {@code src/test/resources/spectaculous-baseline.csv}.
+   *
+   * @param baseline the baseline file
+   * @return a new Regression that uses the given baseline file
+   */
+  public Regression baseline(Path baseline) {
+    return new Regression(warmup, iterations, significance, tolerance, baseline);
+  }
+
+  @Override
+  public <T> Result measure(T target, Operation<? super T, ?> operation) {
+    throw new IllegalStateException("A regression can only be measured on behalf of a statement");
+  }
+
+  @Override
+  public <T> Result measure(String key, T target, Operation<? super T, ?> operation) throws Throwable {
+    Object result = null;
+    for (int i = 0; i < warmup; i++) {
+      result = operation.execute(target);
+    }
+    Histogram current = new Histogram();
+    for (int i = 0; i < iterations; i++) {
+      long start = System.nanoTime();
+      result = operation.execute(target);
+      current.record(System.nanoTime() - start);
+    }
+    sink = result;
+
+    synchronized (LOCK) {
+      Map<String, Histogram> baselines = load();
+      Histogram stored = baselines.get(key);
+      if (stored == null || Boolean.getBoolean(UPDATE_PROPERTY)) {
+        baselines.put(key, current);
+        store(baselines);
+        return Result.of(true, String.format(Locale.ROOT, "median=%s, recorded as baseline",
+            Latency.format(current.percentile(50))));
+      }
+      long median = current.percentile(50);
+      long baselineMedian = stored.percentile(50);
+      double p = pValue(stored, current);
+      boolean regressed = p < significance && median > baselineMedian * (1 + tolerance);
+      return Result.of(!regressed, String.format(Locale.ROOT,
+          "median=%s, baseline median=%s, p=%.4f, significance=%s, tolerance %.0f%%",
+          Latency.format(median), Latency.format(baselineMedian), p, significance, tolerance * 100));
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT, "no significant regression from %s", baseline);
+  }
+
+  /**
+   * Computes the p-value of a one-sided Mann-Whitney U test for the current
+   * values being higher than the baseline ones, using the normal approximation
+   * with tie correction. Values in the same bucket are ties.
+   */
+  static double pValue(Histogram baseline, Histogram current) {
+    double n1 = baseline.count();
+    double n2 = current.count();
+    double n = n1 + n2;
+    double u = 0;
+    double ties = 0;
+    double below = 0;
+    for (int i = 0; i < Histogram.SIZE; i++) {
+      long a = baseline.countAt(i);
+      long b = current.countAt(i);
+      u += b * (below + a / 2.0);
+      below += a;
+      double t = a + b;
+      ties += t * t * t - t;
+    }
+    double mean = n1 * n2 / 2;
+    double variance = n1 * n2 / 12 * ((n + 1) - ties / (n * (n - 1)));
+    if (variance <= 0) {
+      return u > mean ? 0 : 1;
+    }
+    double z = (u - mean - 0.5) / Math.sqrt(variance);
+    return 0.5 * erfc(z / Math.sqrt(2));
+  }
+
+  private static double erfc(double x) {
+    double z = Math.abs(x);
+    double t = 1 / (1 + 0.5 * z);
+    double r = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+        + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+        + t * (-0.82215223 + t * 0.17087277)))))))));
+    return x >= 0 ? r : 2 - r;
+  }
+
+  private Map<String, Histogram> load() throws IOException {
+    Map<String, Histogram> baselines = new TreeMap<>();
+    if (!Files.exists(baseline)) {
+      return baselines;
+    }
+    try (BufferedReader reader = Files.newBufferedReader(baseline, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty() || line.equals(HEADER)) {
+          continue;
+        }
+        int end = closingQuote(line);
+        String key = line.substring(1, end).replace("\"\"", "\"");
+        Histogram histogram = new Histogram();
+        for (String bucket : line.substring(end + 2).split(" ")) {
+          int separator = bucket.indexOf(':');
+          if (separator > 0) {
+            histogram.restore(Integer.parseInt(bucket.substring(0, separator)),
+                Long.parseLong(bucket.substring(separator + 1)));
+          }
+        }
+        baselines.put(key, histogram);
+      }
+    }
+    return baselines;
+  }
+
+  private static int closingQuote(String line) throws IOException {
+    if (line.charAt(0) == '"') {
+      for (int i = 1; i < line.length(); i++) {
+        if (line.charAt(i) == '"') {
+          if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+            i++;
+          } else {
+            return i;
+          }
+        }
+      }
+    }
+    throw new IOException("Invalid baseline line: " + line);
+  }
+
+  private void store(Map<String, Histogram> baselines) throws IOException {
+    Path file = baseline.toAbsolutePath();
+    Files.createDirectories(file.getParent());
+    Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+      writer.write(HEADER);
+      writer.newLine();
+      for (Map.Entry<String, Histogram> entry : baselines.entrySet()) {
+        writer.write('"');
+        writer.write(entry.getKey().replace("\"", "\"\""));
+        writer.write("\",");
+        Histogram histogram = entry.getValue();
+        boolean first = true;
+        for (int i = 0; i < Histogram.SIZE; i++) {
+          long count = histogram.countAt(i);
+          if (count > 0) {
+            if (!first) {
+              writer.write(' ');
+            }
+            writer.write(i + ":" + count);
+            first = false;
+          }
+        }
+        writer.newLine();
+      }
+    }
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Creates a Regression that compares the latency of an operation against its baseline.
+   *
+   * @return a new Regression
+   */
+  public static Regression latency() {
+    return new Regression(100, 1000, 0.01, 0.05, Paths.get("src", "test", "resources", "spectaculous-baseline.csv"));
+  }
+
+}
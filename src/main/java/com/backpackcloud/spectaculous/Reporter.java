@@ -0,0 +1,73 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+/**
+ * Receives an event for each statement that is checked.
+ * <p>
+ * Reporters are discovered through {@link java.util.ServiceLoader}. Events are
+ * delivered by a single background thread, in the order they were published,
+ * so implementations don't need to be thread safe and don't slow down the specs.
+ * A reporter that throws an exception is logged and receives no more events.
+ * The built-in reporters are enabled by system properties:
+ * <ul>
+ * <li>{@code spectaculous.report.jsonl} writes an event per line, as JSON, to the given file</li>
+ * <li>{@code spectaculous.report.junit} writes a JUnit XML report to the given file</li>
+ * </ul>
+ */
+public interface Reporter {
+
+  /**
+   * Receives the given event.
+   *
+   * @param event the event
+   */
+  void report(Event event);
+
+  /**
+   * Called once, when the JVM shuts down, after all events were reported.
+   */
+  default void close() {
+  }
+
+  /**
+   * Runs the given action, delivering the events of the statements it checks on
+   * the current thread to the given reporter. Unlike the discovered reporters,
+   * the given one receives the events synchronously, before each statement
+   * returns, which lets test runners attach them to what they are running.
+   * <p>
+   * The statements a {@link Spec#plan(String) plan} runs in other threads are
+   * captured too, so the reporter may receive events from concurrent threads.
+   * Statements run by threads the action starts on its own are not captured.
+   *
+   * @param reporter the reporter
+   * @param action   the action to run
+   * @throws Throwable anything thrown by the action
+   */
+  static void capture(Reporter reporter, Action action) throws Throwable {
+    Reporting.capture(reporter, action);
+  }
+
+}
@@ -0,0 +1,372 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.function.Supplier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers the events of the statements to the reporters.
+ * <p>
+ * Statements publish events into a bounded ring buffer of preallocated slots,
+ * claimed with a compare and set, and a background thread drains it. Each slot
+ * has a sequence that tells if it's free for the publisher or ready for the
+ * reader, so neither side takes a lock. A statement never waits for the
+ * reporters: if the buffer is full, or the reader is gone, the event is
+ * dropped and counted. When there are no reporters, and no thread is
+ * capturing events, nothing is timed nor published.
+ */
+final class Reporting {
+
+  /**
+   * System property with the file the JSON lines reporter writes to.
+   */
+  static final String JSON_LINES_PROPERTY = "spectaculous.report.jsonl";
+
+  /**
+   * System property with the file the JUnit XML reporter writes to.
+   */
+  static final String JUNIT_XML_PROPERTY = "spectaculous.report.junit";
+
+  /**
+   * System property with the capacity of the ring buffer, rounded up to a power of two.
+   */
+  static final String BUFFER_PROPERTY = "spectaculous.report.buffer";
+
+  private static final long IDLE_NANOS = 1_000_000;
+
+  private static final System.Logger LOGGER = System.getLogger(Reporting.class.getName());
+
+  private static final List<Reporter> REPORTERS = reporters();
+
+  /**
+   * If there is any reporter.
+   */
+  static final boolean ENABLED = !REPORTERS.isEmpty();
+
+  private static final int CAPACITY = ENABLED
+      ? Integer.highestOneBit(Math.max(2, Integer.getInteger(BUFFER_PROPERTY, 8192)) * 2 - 1)
+      : 0;
+
+  private static final Ring RING = new Ring(CAPACITY);
+  private static final AtomicLong DROPPED = new AtomicLong();
+
+  private static volatile boolean closing;
+  private static volatile boolean draining;
+
+  private static final ThreadLocal<Reporter> CAPTURING = new ThreadLocal<>();
+  private static final AtomicInteger CAPTURES = new AtomicInteger();
+
+  static {
+    if (ENABLED) {
+      draining = true;
+      Thread reader = new Thread(Reporting::drain, "spectaculous-reporting");
+      reader.setDaemon(true);
+      reader.start();
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        closing = true;
+        LockSupport.unpark(reader);
+        try {
+          reader.join();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }, "spectaculous-reporting-shutdown"));
+    }
+  }
+
+  private Reporting() {
+  }
+
+  /**
+   * @return {@code true} if the events should be published, either because there
+   * are reporters or because some thread is capturing them
+   */
+  static boolean active() {
+    return ENABLED || CAPTURES.get() > 0;
+  }
+
+  /**
+   * Runs the given action, delivering the events of the statements it checks on
+   * the current thread to the given reporter.
+   *
+   * @param reporter the reporter
+   * @param action   the action to run
+   * @throws Throwable anything thrown by the action
+   */
+  static void capture(Reporter reporter, Action action) throws Throwable {
+    Reporter previous = begin(reporter);
+    try {
+      action.run();
+    } finally {
+      end(previous);
+    }
+  }
+
+  /**
+   * Wraps the given task so the events of the statements it checks are delivered
+   * to the reporter capturing the events of the current thread, whichever thread
+   * runs the task.
+   *
+   * @param task the task
+   * @return the wrapped task, or the given one if the current thread isn't capturing events
+   */
+  static Runnable propagate(Runnable task) {
+    Reporter reporter = CAPTURES.get() > 0 ? CAPTURING.get() : null;
+    if (reporter == null) {
+      return task;
+    }
+    return () -> {
+      Reporter previous = begin(reporter);
+      try {
+        task.run();
+      } finally {
+        end(previous);
+      }
+    };
+  }
+
+  private static Reporter begin(Reporter reporter) {
+    Reporter previous = CAPTURING.get();
+    CAPTURING.set(reporter);
+    CAPTURES.incrementAndGet();
+    return previous;
+  }
+
+  private static void end(Reporter previous) {
+    CAPTURES.decrementAndGet();
+    if (previous == null) {
+      CAPTURING.remove();
+    } else {
+      CAPTURING.set(previous);
+    }
+  }
+
+  /**
+   * Publishes the event of a statement.
+   *
+   * @param scenario the scenario of the spec
+   * @param reason   the reason of the statement
+   * @param kind     the kind of the statement
+   * @param failure  the failure, or {@code null} if the statement was followed
+   * @param nanos    how long the statement took
+   */
+  static void publish(String scenario, String reason, Event.Kind kind, Failure failure, long nanos) {
+    if (CAPTURES.get() > 0) {
+      Reporter reporter = CAPTURING.get();
+      if (reporter != null) {
+        reporter.report(new Event(scenario, reason, kind, failure, nanos));
+      }
+    }
+    if (!ENABLED) {
+      return;
+    }
+    if (closing || !draining || !RING.offer(scenario, reason, kind, failure, nanos)) {
+      if (DROPPED.getAndIncrement() == 0) {
+        LOGGER.log(System.Logger.Level.WARNING, "The reporters can't keep up, dropping events");
+      }
+    }
+  }
+
+  private static void drain() {
+    List<Reporter> reporters = new ArrayList<>(REPORTERS);
+    try {
+      while (true) {
+        Event event = RING.poll();
+        if (event != null) {
+          deliver(reporters, event);
+        } else if (closing && RING.isEmpty()) {
+          break;
+        } else {
+          LockSupport.parkNanos(IDLE_NANOS);
+        }
+      }
+    } finally {
+      draining = false;
+      for (Reporter reporter : REPORTERS) {
+        try {
+          reporter.close();
+        } catch (Throwable e) {
+          LOGGER.log(System.Logger.Level.WARNING, () -> "Failed to close " + reporter, e);
+        }
+      }
+      long dropped = DROPPED.get();
+      if (dropped > 0) {
+        LOGGER.log(System.Logger.Level.WARNING, () -> dropped + " events were dropped");
+      }
+    }
+  }
+
+  /**
+   * Delivers the given event to the given reporters. A reporter that fails is
+   * removed from the list and logged once, instead of failing for every event.
+   *
+   * @param reporters the reporters that didn't fail yet
+   * @param event     the event
+   */
+  static void deliver(List<Reporter> reporters, Event event) {
+    for (Iterator<Reporter> iterator = reporters.iterator(); iterator.hasNext(); ) {
+      Reporter reporter = iterator.next();
+      try {
+        reporter.report(event);
+      } catch (Throwable e) {
+        iterator.remove();
+        LOGGER.log(System.Logger.Level.WARNING,
+            () -> "Failed to report " + event.scenario() + ", no more events go to " + reporter, e);
+      }
+    }
+  }
+
+  /**
+   * Loads the reporters. A reporter that can't be loaded is logged and left out,
+   * so it doesn't break every spec.
+   */
+  static List<Reporter> reporters() {
+    List<Reporter> reporters = new ArrayList<>();
+    Iterator<Reporter> services = ServiceLoader.load(Reporter.class).iterator();
+    while (true) {
+      try {
+        if (!services.hasNext()) {
+          break;
+        }
+      } catch (ServiceConfigurationError e) {
+        LOGGER.log(System.Logger.Level.WARNING, "Failed to look up the reporters", e);
+        break;
+      }
+      load(reporters, "a reporter", services::next);
+    }
+    String jsonLines = System.getProperty(JSON_LINES_PROPERTY);
+    if (jsonLines != null) {
+      load(reporters, jsonLines, () -> new JsonLinesReporter(Paths.get(jsonLines)));
+    }
+    String junitXml = System.getProperty(JUNIT_XML_PROPERTY);
+    if (junitXml != null) {
+      load(reporters, junitXml, () -> new JUnitXmlReporter(Paths.get(junitXml)));
+    }
+    return Collections.unmodifiableList(reporters);
+  }
+
+  private static void load(List<Reporter> reporters, String name, Supplier<Reporter> reporter) {
+    try {
+      reporters.add(reporter.get());
+    } catch (ServiceConfigurationError | RuntimeException e) {
+      LOGGER.log(System.Logger.Level.WARNING, () -> "Failed to load " + name + ", its events are not reported", e);
+    }
+  }
+
+  /**
+   * A bounded ring buffer of events with many publishers and a single reader.
+   */
+  static final class Ring {
+
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLongArray sequences;
+    private final String[] scenarios;
+    private final String[] reasons;
+    private final Event.Kind[] kinds;
+    private final Failure[] failures;
+    private final long[] nanos;
+    private long head;
+
+    /**
+     * @param capacity the number of slots, a power of two
+     */
+    Ring(int capacity) {
+      this.mask = capacity - 1;
+      this.sequences = new AtomicLongArray(capacity);
+      this.scenarios = new String[capacity];
+      this.reasons = new String[capacity];
+      this.kinds = new Event.Kind[capacity];
+      this.failures = new Failure[capacity];
+      this.nanos = new long[capacity];
+      for (int i = 0; i < capacity; i++) {
+        sequences.set(i, i);
+      }
+    }
+
+    /**
+     * Adds an event, without waiting for a free slot.
+     *
+     * @return {@code false} if the buffer is full
+     */
+    boolean offer(String scenario, String reason, Event.Kind kind, Failure failure, long nanos) {
+      long claim;
+      int slot;
+      do {
+        claim = tail.get();
+        slot = (int) claim & mask;
+        if (sequences.get(slot) != claim) {
+          return false;
+        }
+      } while (!tail.compareAndSet(claim, claim + 1));
+      scenarios[slot] = scenario;
+      reasons[slot] = reason;
+      kinds[slot] = kind;
+      failures[slot] = failure;
+      this.nanos[slot] = nanos;
+      sequences.lazySet(slot, claim + 1);
+      return true;
+    }
+
+    /**
+     * Takes the next event. Only one thread may call it.
+     *
+     * @return the next event, or {@code null} if it isn't published yet
+     */
+    Event poll() {
+      int slot = (int) head & mask;
+      if (sequences.get(slot) != head + 1) {
+        return null;
+      }
+      Event event = new Event(scenarios[slot], reasons[slot], kinds[slot], failures[slot], nanos[slot]);
+      scenarios[slot] = null;
+      reasons[slot] = null;
+      failures[slot] = null;
+      sequences.lazySet(slot, head + mask + 1);
+      head++;
+      return event;
+    }
+
+    /**
+     * @return {@code true} if every claimed slot was taken by {@link #poll()}
+     */
+    boolean isEmpty() {
+      return head == tail.get();
+    }
+
+  }
+
+}
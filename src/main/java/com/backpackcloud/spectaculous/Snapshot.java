@@ -0,0 +1,291 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * A measure that compares the output of an operation against a snapshot stored
+ * in a file, also known as a golden file. The operation may return a
+ * {@link ByteBuffer}, a {@code byte[]}, a {@link Path} or an {@link InputStream},
+ * which is closed after the comparison.
+ * <p>
+ * The snapshot is memory-mapped and compared chunk by chunk, so large outputs
+ * are never copied to the heap, and failures report the first offset where the
+ * output differs. The first run of a statement records its snapshot. Set the
+ * system property {@value #RECORD_PROPERTY} to {@code true} to record the
+ * current outputs as the new snapshots.
+ */
+public final class Snapshot implements Measure {
+
+  /**
+   * System property that makes the statements record their outputs as the new snapshots.
+   */
+  public static final String RECORD_PROPERTY = "spectaculous.snapshot.record";
+
+  private static final int STREAM_BUFFER = 64 * 1024;
+
+  private final String name;
+  private final Path directory;
+  private final int chunk;
+
+  private Snapshot(String name, Path directory, int chunk) {
+    if (chunk < 1) {
+      throw new IllegalArgumentException("Invalid chunk size: " + chunk);
+    }
+    this.name = name;
+    this.directory = directory;
+    this.chunk = chunk;
+  }
+
+  /**
+   * Sets the directory that stores the snapshots. Defaults to {@code src/test/snapshots}.
+   *
+   * @param directory the snapshot directory
+   * @return a new Snapshot that uses the given directory
+   */
+  public Snapshot directory(Path directory) {
+    return new Snapshot(name, directory, chunk);
+  }
+
+  /**
+   * Sets how many bytes of a file are mapped at once. Defaults to 16 MiB.
+   *
+   * @param chunk the size of the mapped chunks
+   * @return a new Snapshot that uses the given chunk size
+   */
+  public Snapshot chunk(int chunk) {
+    return new Snapshot(name, directory, chunk);
+  }
+
+  /**
+   * @return the file that stores this snapshot
+   */
+  public Path file() {
+    return directory.resolve(name);
+  }
+
+  @Override
+  public <T> Result measure(T target, Operation<? super T, ?> operation) throws Throwable {
+    Object output = operation.execute(target);
+    Path file = file();
+    try {
+      if (!Files.exists(file) || Boolean.getBoolean(RECORD_PROPERTY)) {
+        long size = record(output, file);
+        return Result.of(true, String.format(Locale.ROOT, "%d bytes, recorded as snapshot %s", size, name));
+      }
+      try (Source expected = map(file); Source actual = source(output)) {
+        return compare(expected, actual, Files.size(file));
+      }
+    } finally {
+      if (output instanceof InputStream) {
+        ((InputStream) output).close();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "matching snapshot " + name;
+  }
+
+  private Result compare(Source expected, Source actual, long size) throws IOException {
+    long offset = 0;
+    ByteBuffer a = remaining(expected, expected.next());
+    ByteBuffer b = remaining(actual, actual.next());
+    while (a != null && b != null) {
+      int length = Math.min(a.remaining(), b.remaining());
+      ByteBuffer left = a.slice().limit(length);
+      ByteBuffer right = b.slice().limit(length);
+      int mismatch = left.mismatch(right);
+      if (mismatch >= 0) {
+        return Result.of(false, String.format(Locale.ROOT,
+            "differs from snapshot %s at offset %d: expected 0x%02x, actual 0x%02x",
+            name, offset + mismatch, left.get(mismatch), right.get(mismatch)));
+      }
+      a.position(a.position() + length);
+      b.position(b.position() + length);
+      offset += length;
+      a = remaining(expected, a);
+      b = remaining(actual, b);
+    }
+    if (a != null) {
+      return Result.of(false, String.format(Locale.ROOT,
+          "differs from snapshot %s at offset %d: actual ends, snapshot has %d bytes", name, offset, size));
+    }
+    if (b != null) {
+      return Result.of(false, String.format(Locale.ROOT,
+          "differs from snapshot %s at offset %d: snapshot ends, actual has more bytes", name, offset));
+    }
+    return Result.of(true, String.format(Locale.ROOT, "matches snapshot %s (%d bytes)", name, offset));
+  }
+
+  private static ByteBuffer remaining(Source source, ByteBuffer buffer) throws IOException {
+    while (buffer != null && !buffer.hasRemaining()) {
+      buffer = source.next();
+    }
+    return buffer;
+  }
+
+  private long record(Object output, Path file) throws IOException {
+    Path target = file.toAbsolutePath();
+    Files.createDirectories(target.getParent());
+    Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+    try {
+      long size;
+      if (output instanceof Path) {
+        Files.copy((Path) output, temporary, StandardCopyOption.REPLACE_EXISTING);
+        size = Files.size(temporary);
+      } else if (output instanceof InputStream) {
+        size = Files.copy((InputStream) output, temporary, StandardCopyOption.REPLACE_EXISTING);
+      } else {
+        ByteBuffer buffer = buffer(output);
+        size = buffer.remaining();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+          while (buffer.hasRemaining()) {
+            channel.write(buffer);
+          }
+        }
+      }
+      Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      return size;
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  private Source source(Object output) throws IOException {
+    if (output instanceof Path) {
+      return map((Path) output);
+    }
+    if (output instanceof InputStream) {
+      return read(Channels.newChannel((InputStream) output));
+    }
+    ByteBuffer buffer = buffer(output);
+    return new Source() {
+      private boolean consumed;
+
+      @Override
+      public ByteBuffer next() {
+        if (consumed) {
+          return null;
+        }
+        consumed = true;
+        return buffer;
+      }
+    };
+  }
+
+  private static ByteBuffer buffer(Object output) {
+    if (output instanceof ByteBuffer) {
+      return ((ByteBuffer) output).duplicate();
+    }
+    if (output instanceof byte[]) {
+      return ByteBuffer.wrap((byte[]) output);
+    }
+    throw new IllegalArgumentException("Unsupported snapshot output: "
+        + (output == null ? null : output.getClass().getName()));
+  }
+
+  private Source map(Path file) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    return new Source() {
+      private long position;
+
+      @Override
+      public ByteBuffer next() throws IOException {
+        long size = channel.size();
+        if (position >= size) {
+          return null;
+        }
+        long length = Math.min(chunk, size - position);
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        position += length;
+        return buffer;
+      }
+
+      @Override
+      public void close() throws IOException {
+        channel.close();
+      }
+    };
+  }
+
+  private static Source read(ReadableByteChannel channel) {
+    ByteBuffer buffer = ByteBuffer.allocate(STREAM_BUFFER);
+    return new Source() {
+      @Override
+      public ByteBuffer next() throws IOException {
+        buffer.clear();
+        int read = 0;
+        while (buffer.hasRemaining() && read >= 0) {
+          read = channel.read(buffer);
+        }
+        buffer.flip();
+        return buffer.hasRemaining() ? buffer : null;
+      }
+    };
+  }
+
+  /**
+   * A sequence of chunks of bytes to compare.
+   */
+  private interface Source extends Closeable {
+
+    /**
+     * @return the next chunk, or {@code null} if there are no more bytes
+     */
+    ByteBuffer next() throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+
+  }
+
+  /**
+   * Creates a Snapshot that compares the output of an operation against the
+   * snapshot with the given name.
+   *
+   * @param name the name of the snapshot, which is also the name of its file
+   * @return a new Snapshot
+   */
+  public static Snapshot snapshot(String name) {
+    return new Snapshot(name, Paths.get("src", "test", "snapshots"), 16 * 1024 * 1024);
+  }
+
+}
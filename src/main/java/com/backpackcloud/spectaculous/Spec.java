@@ -24,42 +24,224 @@
 
 package com.backpackcloud.spectaculous;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.DoublePredicate;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 /**
  * Initial class that offers a start point for defining specs.
  */
-public final class Spec<T> implements Spectacle<T> {
+public final class Spec<T> implements Spectacle.Releasable<T> {
 
+  /**
+   * How long asynchronous operations can take to complete by default, in seconds.
+   */
+  public static final long ASYNC_TIMEOUT_SECONDS = 10;
+
+  /**
+   * System property with the timeout of the statements that don't set one, as
+   * an ISO-8601 duration like {@code PT30S}. Statements have no timeout by default.
+   * The property is read once, when this class is loaded.
+   */
+  public static final String TIMEOUT_PROPERTY = "spectaculous.statement.timeout";
+
+  private static final Duration DEFAULT_TIMEOUT = defaultTimeout(System.getProperty(TIMEOUT_PROPERTY));
+
+  private final Stage stage;
   private final Supplier<? extends T> supplier;
   private final String reason;
   private final String scenario;
+  private final Polling polling;
+  private final Duration timeout;
 
   Spec(String scenario) {
-    this(scenario, () -> {throw new SpectacularException("No object given");}, "");
+    this(scenario, Stage.immediate());
+  }
+
+  Spec(String scenario, Stage stage) {
+    this(scenario, stage, () -> {throw new SpectacularException("No object given");}, "", null, null);
   }
 
-  private Spec(String scenario, Supplier<? extends T> supplier, String reason) {
+  private Spec(String scenario, Stage stage, Supplier<? extends T> supplier, String reason,
+               Polling polling, Duration timeout) {
     this.scenario = scenario;
+    this.stage = stage;
     this.supplier = supplier;
     this.reason = reason;
+    this.polling = polling;
+    this.timeout = timeout;
+  }
+
+  /**
+   * Performs the given statement, or records it if this spec is a plan or is
+   * being compiled.
+   *
+   * @param kind      the kind of the statement
+   * @param targeted  if the statement requires the target object
+   * @param statement the statement to perform
+   * @return this Spec, without the polling and the timeout if they were used by the statement
+   */
+  private Spectacle<T> perform(Event.Kind kind, boolean targeted, Statement<T> statement) {
+    stage.perform(new Step<>(this, kind, targeted, statement));
+    return polling == null && timeout == null ? this : new Spec<>(scenario, stage, supplier, reason, null, null);
+  }
+
+  /**
+   * @return the key of the next statement, which tells it apart from the other
+   * statements of this spec even if they have the same reason
+   */
+  private String key() {
+    int index = stage.statements() + 1;
+    return reason.isEmpty() ? scenario + " #" + index : scenario + ": " + reason + " #" + index;
+  }
+
+  private Failure failure(Throwable throwable) {
+    if (throwable instanceof Violation) {
+      Violation violation = (Violation) throwable;
+      return new Failure(scenario, reason,
+          violation.detail, violation.expected, violation.actual, violation.getCause());
+    }
+    return new Failure(scenario, reason, null, null, null, throwable);
+  }
+
+  private static void thrown(Class<? extends Throwable> throwable, Action action) throws IOException {
+    Tape tape = Tape.current();
+    if (tape != null) {
+      Throwable e = tape.run(action);
+      if (e == null) {
+        throw new Violation();
+      }
+      if (!Tape.isInstance(throwable, e)) {
+        throw new Violation(e);
+      }
+      return;
+    }
+    try {
+      action.run();
+    } catch (Throwable e) {
+      if (!throwable.isInstance(e)) {
+        throw new Violation(e);
+      }
+      return;
+    }
+    throw new Violation();
+  }
+
+  private static void failed(Action action) throws IOException {
+    Tape tape = Tape.current();
+    if (tape != null) {
+      if (tape.run(action) == null) {
+        throw new Violation();
+      }
+      return;
+    }
+    try {
+      action.run();
+    } catch (Throwable e) {
+      return;
+    }
+    throw new Violation();
+  }
+
+  private static void succeeded(Tape tape, Action action) throws Throwable {
+    Throwable e = tape.run(action);
+    if (e != null) {
+      throw e;
+    }
+  }
+
+  private static <T, R> R execute(Operation<? super T, R> operation, T target) throws Throwable {
+    Tape tape = Tape.current();
+    return tape == null ? operation.execute(target) : tape.execute(operation, target);
+  }
+
+  private static <T> int executeInt(IntOperation<? super T> operation, T target) throws Throwable {
+    Tape tape = Tape.current();
+    return tape == null ? operation.execute(target) : tape.executeInt(operation, target);
+  }
+
+  private static <T> long executeLong(LongOperation<? super T> operation, T target) throws Throwable {
+    Tape tape = Tape.current();
+    return tape == null ? operation.execute(target) : tape.executeLong(operation, target);
+  }
+
+  private static <T> double executeDouble(DoubleOperation<? super T> operation, T target) throws Throwable {
+    Tape tape = Tape.current();
+    return tape == null ? operation.execute(target) : tape.executeDouble(operation, target);
+  }
+
+  private <R> void await(CompletionStage<? extends R> operation, Duration timeout, Completion<R> completion) {
+    AtomicBoolean completed = new AtomicBoolean();
+    CompletableFuture<R> result = new CompletableFuture<>();
+    operation.whenComplete((value, error) -> {
+      completed.set(true);
+      if (error != null) {
+        result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+            ? error.getCause()
+            : error);
+      } else {
+        result.complete(value);
+      }
+    });
+    stage.await(result.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS).handle((value, error) -> {
+      try {
+        if (error instanceof TimeoutException && !completed.get()) {
+          throw new Violation(String.format("not completed within %s", Latency.format(timeout.toNanos())));
+        }
+        completion.check(value, error);
+        return null;
+      } catch (Throwable throwable) {
+        return failure(throwable);
+      }
+    }));
   }
 
-  private <E> Spectacle<T> test(E target, Predicate<? super E> predicate) {
-    if (!predicate.test(target)) {
-      throwSpecException();
+  private static Violation counterexample(Generated.Counterexample<?> counterexample) {
+    Throwable failure = counterexample.failure();
+    if (!(failure instanceof Violation)) {
+      return new Violation(counterexample.toString(), null, null, failure);
+    }
+    Violation violation = (Violation) failure;
+    String detail = counterexample.toString();
+    if (violation.detail != null) {
+      detail = String.format("%s; %s", detail, violation.detail);
+    } else if (violation.expected != null) {
+      detail = String.format("%s; expected: %s, actual: %s", detail, violation.expected, violation.actual);
     }
-    return this;
+    return new Violation(detail, violation.expected, violation.actual, violation.getCause());
   }
 
-  private <E> E throwSpecException() {
-    return throwSpecException(null);
+  private static void accept(Measure.Result result) {
+    if (!result.accepted()) {
+      throw new Violation(result.report());
+    }
   }
 
-  private <E> E throwSpecException(Throwable cause) {
-    String message = reason.isEmpty() ? scenario : String.format("%s: %s", scenario, reason);
-    throw new SpectacularException(message, cause);
+  @Override
+  public StatementComplexityDefinition<T> expect(Complexity complexity) {
+    return input -> operation -> perform(Event.Kind.MEASURE, false,
+        target -> accept(complexity.measure(input, operation)));
   }
 
   @Override
@@ -67,33 +249,24 @@ public final class Spec<T> implements Spectacle<T> {
     return new OutcomeDefinition<T>() {
       @Override
       public Spectacle<T> willThrow(Class<? extends Throwable> throwable) {
-        try {
-          action.run(supplier.get());
-          throwSpecException();
-        } catch (Throwable e) {
-          test(e.getClass(), throwable::isAssignableFrom);
-        }
-        return Spec.this;
+        return perform(Event.Kind.THEN, true, target -> thrown(throwable, () -> action.run(target)));
       }
 
       @Override
       public Spectacle<T> willFail() {
-        try {
-          action.run(supplier.get());
-        } catch (Throwable e) {
-          return Spec.this;
-        }
-        return throwSpecException();
+        return perform(Event.Kind.THEN, true, target -> failed(() -> action.run(target)));
       }
 
       @Override
       public Spectacle<T> willSucceed() {
-        try {
-          action.run(supplier.get());
-        } catch (Throwable e) {
-          throwSpecException();
-        }
-        return Spec.this;
+        return perform(Event.Kind.THEN, true, target -> {
+          Tape tape = Tape.current();
+          if (tape == null) {
+            action.run(target);
+          } else {
+            succeeded(tape, () -> action.run(target));
+          }
+        });
       }
     };
   }
@@ -103,45 +276,107 @@ public final class Spec<T> implements Spectacle<T> {
     return new OutcomeDefinition<T>() {
       @Override
       public Spectacle<T> willThrow(Class<? extends Throwable> throwable) {
-        try {
-          action.run();
-          throwSpecException();
-        } catch (Throwable e) {
-          test(e.getClass(), throwable::isAssignableFrom);
-        }
-        return Spec.this;
+        return perform(Event.Kind.THEN, false, target -> thrown(throwable, action));
       }
 
       @Override
       public Spectacle<T> willFail() {
-        try {
-          action.run();
-        } catch (Throwable e) {
-          return Spec.this;
-        }
-        return throwSpecException();
+        return perform(Event.Kind.THEN, false, target -> failed(action));
       }
 
       @Override
       public Spectacle<T> willSucceed() {
-        try {
-          action.run();
-        } catch (Throwable e) {
-          throwSpecException();
-        }
-        return Spec.this;
+        return perform(Event.Kind.THEN, false, target -> {
+          Tape tape = Tape.current();
+          if (tape == null) {
+            action.run();
+          } else {
+            succeeded(tape, action);
+          }
+        });
+      }
+    };
+  }
+
+  @Override
+  public OutcomeDefinition<T> then(Stress<? super T> stress) {
+    return new OutcomeDefinition<T>() {
+      @Override
+      public Spectacle<T> willThrow(Class<? extends Throwable> throwable) {
+        return perform(Event.Kind.STRESS, true, target -> {
+          Stress.Report report = stress.run(target);
+          if (!throwable.isInstance(report.failure())) {
+            throw new Violation(report.toString(), null, null, report.failure());
+          }
+        });
+      }
+
+      @Override
+      public Spectacle<T> willFail() {
+        return perform(Event.Kind.STRESS, true, target -> {
+          Stress.Report report = stress.run(target);
+          if (report.failure() == null) {
+            throw new Violation(report.toString());
+          }
+        });
+      }
+
+      @Override
+      public Spectacle<T> willSucceed() {
+        return perform(Event.Kind.STRESS, true, target -> {
+          Stress.Report report = stress.run(target);
+          if (report.failure() != null) {
+            throw new Violation(report.toString(), null, null, report.failure());
+          }
+        });
       }
     };
   }
 
   @Override
   public Spectacle<T> given(Supplier<T> supplier) {
-    return new Spec<>(scenario, supplier, reason);
+    stage.checkGiven();
+    release();
+    return new Spec<>(scenario, stage, supplier, reason, polling, timeout);
+  }
+
+  @Override
+  public Spectacle<T> given(Gen<T> gen) {
+    stage.checkGiven();
+    release();
+    return new Spec<>(scenario, stage, Generated.of(gen), reason, polling, timeout);
+  }
+
+  @Override
+  public Releasable<T> givenOnce(Supplier<T> supplier) {
+    stage.checkGiven();
+    release();
+    return new Spec<>(scenario, stage, Memoized.of(supplier), reason, polling, timeout);
+  }
+
+  @Override
+  public Releasable<T> givenShared(Supplier<T> supplier) {
+    stage.checkGiven();
+    release();
+    return new Spec<>(scenario, stage, Memoized.concurrent(supplier), reason, polling, timeout);
   }
 
   @Override
   public Spectacle<T> because(String newReason) {
-    return new Spec<>(scenario, supplier, newReason);
+    return new Spec<>(scenario, stage, supplier, newReason, polling, timeout);
+  }
+
+  @Override
+  public Spectacle<T> eventually(Polling polling) {
+    return new Spec<>(scenario, stage, supplier, reason, polling, timeout);
+  }
+
+  @Override
+  public Spectacle<T> within(Duration timeout) {
+    if (timeout.isNegative() || timeout.isZero()) {
+      throw new IllegalArgumentException("Invalid timeout: " + timeout);
+    }
+    return new Spec<>(scenario, stage, supplier, reason, polling, timeout);
   }
 
   @Override
@@ -149,57 +384,216 @@ public final class Spec<T> implements Spectacle<T> {
     return new StatementActionDefinition<T>() {
       @Override
       public Spectacle<T> when(TargetedAction<? super T> action) {
-        try {
-          action.run(supplier.get());
-          throwSpecException();
-        } catch (Throwable e) {
-          test(e.getClass(), throwable::isAssignableFrom);
-        }
-        return Spec.this;
+        return perform(Event.Kind.EXPECT, true, target -> thrown(throwable, () -> action.run(target)));
       }
 
       @Override
       public Spectacle<T> when(Action action) {
-        try {
-          action.run();
-          throwSpecException();
-        } catch (Throwable e) {
-          test(e.getClass(), throwable::isAssignableFrom);
-        }
-        return Spec.this;
+        return perform(Event.Kind.EXPECT, false, target -> thrown(throwable, action));
       }
     };
   }
 
   @Override
   public <R> StatementOperationDefinition<T, R> expect(Predicate<? super R> predicate) {
-    return operation -> {
-      try {
-        return test(operation.execute(supplier.get()), predicate);
-      } catch (Throwable throwable) {
-        return throwSpecException(throwable);
+    return new StatementOperationDefinition<T, R>() {
+      @Override
+      public Spectacle<T> from(Operation<? super T, R> operation) {
+        return perform(Event.Kind.EXPECT, true, target -> {
+          R result = execute(operation, target);
+          if (!predicate.test(result)) {
+            throw new Violation(predicate instanceof Expectation ? predicate : null, result);
+          }
+        });
+      }
+
+      @Override
+      public Spectacle<T> fromAsync(AsyncOperation<? super T, ? extends R> operation) {
+        return fromAsync(operation, Duration.ofSeconds(ASYNC_TIMEOUT_SECONDS));
+      }
+
+      @Override
+      public Spectacle<T> fromAsync(AsyncOperation<? super T, ? extends R> operation, Duration timeout) {
+        stage.checkAsync();
+        return perform(Event.Kind.EXPECT, true, target -> await(operation.execute(target), timeout, (result, error) -> {
+          if (error != null) {
+            throw error;
+          }
+          if (!predicate.test(result)) {
+            throw new Violation(predicate instanceof Expectation ? predicate : null, result);
+          }
+        }));
       }
     };
   }
 
   @Override
-  public Spectacle<T> waitFor(Action action) {
-    try {
-      action.run();
-    } catch (Throwable throwable) {
-      throw new SpectacularException(throwable);
+  public IntStatementDefinition<T> expectInt(int value) {
+    return operation -> perform(Event.Kind.EXPECT, true, target -> {
+      int result = executeInt(operation, target);
+      if (result != value) {
+        throw new Violation(value, result);
+      }
+    });
+  }
+
+  @Override
+  public LongStatementDefinition<T> expectLong(long value) {
+    return operation -> perform(Event.Kind.EXPECT, true, target -> {
+      long result = executeLong(operation, target);
+      if (result != value) {
+        throw new Violation(value, result);
+      }
+    });
+  }
+
+  @Override
+  public DoubleStatementDefinition<T> expectDouble(double value) {
+    return operation -> perform(Event.Kind.EXPECT, true, target -> {
+      double result = executeDouble(operation, target);
+      if (Double.compare(result, value) != 0) {
+        throw new Violation(value, result);
+      }
+    });
+  }
+
+  @Override
+  public DoubleStatementDefinition<T> expectClose(double value, double epsilon) {
+    if (!(epsilon >= 0)) {
+      throw new IllegalArgumentException("Invalid epsilon: " + epsilon);
     }
-    return this;
+    return operation -> perform(Event.Kind.EXPECT, true, target -> {
+      double result = executeDouble(operation, target);
+      if (!(Math.abs(result - value) <= epsilon)) {
+        throw new Violation(String.format("%s +/- %s", value, epsilon), result);
+      }
+    });
+  }
+
+  @Override
+  public IntStatementDefinition<T> expectInt(IntPredicate predicate) {
+    return operation -> perform(Event.Kind.EXPECT, true, target -> {
+      int result = executeInt(operation, target);
+      if (!predicate.test(result)) {
+        throw new Violation(null, result);
+      }
+    });
+  }
+
+  @Override
+  public LongStatementDefinition<T> expectLong(LongPredicate predicate) {
+    return operation -> perform(Event.Kind.EXPECT, true, target -> {
+      long result = executeLong(operation, target);
+      if (!predicate.test(result)) {
+        throw new Violation(null, result);
+      }
+    });
+  }
+
+  @Override
+  public DoubleStatementDefinition<T> expectDouble(DoublePredicate predicate) {
+    return operation -> perform(Event.Kind.EXPECT, true, target -> {
+      double result = executeDouble(operation, target);
+      if (!predicate.test(result)) {
+        throw new Violation(null, result);
+      }
+    });
+  }
+
+  @Override
+  public StatementMeasureDefinition<T> expect(Measure measure) {
+    return new StatementMeasureDefinition<T>() {
+      @Override
+      public Spectacle<T> from(Operation<? super T, ?> operation) {
+        String key = key();
+        return perform(Event.Kind.MEASURE, true, target -> accept(measure.measure(key, target, operation)));
+      }
+
+      @Override
+      public Spectacle<T> from(Action action) {
+        String key = key();
+        return perform(Event.Kind.MEASURE, false, target -> accept(measure.measure(key, null, o -> {
+          action.run();
+          return null;
+        })));
+      }
+    };
+  }
+
+  @Override
+  public StatementWorkloadDefinition<T> expectWorkload(Workload workload) {
+    return new StatementWorkloadDefinition<T>() {
+      @Override
+      public Spectacle<T> from(TargetedAction<? super T> action) {
+        return perform(Event.Kind.WORKLOAD, true, target -> accept(workload.drive(target, action)));
+      }
+
+      @Override
+      public Spectacle<T> from(Action action) {
+        return perform(Event.Kind.WORKLOAD, false, target -> accept(workload.drive(null, o -> action.run())));
+      }
+    };
+  }
+
+  @Override
+  public Spectacle<T> waitFor(Action action) {
+    return perform(Event.Kind.WAIT, false, target -> action.run());
   }
 
   @Override
   public Spectacle<T> waitFor(TargetedAction<? super T> action) {
+    return perform(Event.Kind.WAIT, true, action::run);
+  }
+
+  @Override
+  public void verify() {
     try {
-      action.run(supplier.get());
-    } catch (Throwable throwable) {
-      throw new SpectacularException(throwable);
+      stage.verify(scenario);
+    } finally {
+      release();
+    }
+  }
+
+  @Override
+  public <R> AsyncOutcomeDefinition<T, R> thenAsync(AsyncOperation<? super T, ? extends R> operation) {
+    return new AsyncOutcome<>(operation, Duration.ofSeconds(ASYNC_TIMEOUT_SECONDS));
+  }
+
+  @Override
+  public CompletableFuture<Void> verifyAsync() {
+    return stage.settled().thenRun(this::verify);
+  }
+
+  /**
+   * Releases the target object built by {@link #givenOnce(Supplier)} or
+   * {@link #givenShared(Supplier)}, if any. Asynchronous statements may still
+   * use it, so it's only closed once every pending statement completed.
+   */
+  @Override
+  public void release() {
+    if (!stage.deferred() && supplier instanceof Memoized) {
+      Memoized<?> memoized = (Memoized<?>) supplier;
+      CompletableFuture<Void> settled = stage.settled();
+      if (settled.isDone()) {
+        memoized.close();
+      } else {
+        settled.thenRun(memoized::close);
+      }
     }
-    return this;
+  }
+
+  /**
+   * Makes this spec report failures with exceptions that don't capture the stack
+   * trace. This is meant for specs that run as guards on a hot path, where failures
+   * are expected to happen and capturing the stack trace is too expensive. The
+   * exception still points to the scenario and the reason of the failed statement.
+   * <p>
+   * This should be called before defining the statements.
+   *
+   * @return a new Spec that reports failures without stack traces
+   */
+  public Spec<T> stackless() {
+    return new Spec<>(scenario, stage.stackless(), supplier, reason, polling, timeout);
   }
 
   /**
@@ -222,4 +616,430 @@ public final class Spec<T> implements Spectacle<T> {
     return describe(type.getName());
   }
 
-}
\ No newline at end of file
+  /**
+   * Starts a new plan describing it with the given scenario.
+   * <p>
+   * A plan records its statements instead of running them. Each target object
+   * given to the plan starts a segment, and the segments run concurrently in
+   * the common ForkJoinPool once {@link #verify()} is called. The statements of
+   * a segment keep running in the order they were defined.
+   *
+   * @param scenario the given scenario that describes this plan.
+   * @return a new Spec that records its statements
+   */
+  public static <T> Spec<T> plan(String scenario) {
+    return plan(scenario, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Starts a new plan describing it with the given scenario. The segments of
+   * the plan run in the given executor.
+   *
+   * @param scenario the given scenario that describes this plan.
+   * @param executor the executor for running the segments.
+   * @return a new Spec that records its statements
+   * @see #plan(String)
+   */
+  public static <T> Spec<T> plan(String scenario, Executor executor) {
+    return new Spec<>(scenario, Stage.planned(executor));
+  }
+
+  /**
+   * Starts a new spec describing it with the given scenario. Instead of throwing
+   * an exception at the first statement that is not followed, the spec collects
+   * all failures and reports them together once {@link #verify()} is called.
+   *
+   * @param scenario the given scenario that describes this spec.
+   * @return a new Spec that collects its failures
+   */
+  public static <T> Spec<T> softly(String scenario) {
+    return new Spec<>(scenario, Stage.collecting());
+  }
+
+  /**
+   * Starts a new spec describing it with the given class.
+   *
+   * @param type the class that is the target of this spec.
+   * @return a new Spec that collects its failures
+   * @see #softly(String)
+   */
+  public static <T> Spec<T> softly(Class<T> type) {
+    return softly(type.getName());
+  }
+
+  /**
+   * Starts a new plan describing it with the given class.
+   *
+   * @param type the class that is the target of this plan.
+   * @return a new Spec that records its statements
+   * @see #plan(String)
+   */
+  public static <T> Spec<T> plan(Class<T> type) {
+    return plan(type.getName());
+  }
+
+  /**
+   * Compiles the statements defined by the given function into a CompiledSpec.
+   * <p>
+   * The function receives a spec without a target object and should define the
+   * statements with it. The target object is given to the compiled spec every time
+   * it's evaluated, so the function can't use any of the {@code given} methods.
+   *
+   * @param scenario   the given scenario that describes the spec.
+   * @param definition the function that defines the statements
+   * @return a new CompiledSpec
+   */
+  public static <T> CompiledSpec<T> compile(String scenario, Function<Spec<T>, ? extends Spectacle<T>> definition) {
+    Stage stage = Stage.compiling();
+    definition.apply(new Spec<>(scenario, stage));
+    return new CompiledSpec<>(scenario, stage.steps());
+  }
+
+  /**
+   * Compiles the statements defined by the given function into a CompiledSpec.
+   *
+   * @param type       the class that is the target of the spec.
+   * @param definition the function that defines the statements
+   * @return a new CompiledSpec
+   * @see #compile(String, Function)
+   */
+  public static <T> CompiledSpec<T> compile(Class<T> type, Function<Spec<T>, ? extends Spectacle<T>> definition) {
+    return compile(type.getName(), definition);
+  }
+
+  /**
+   * Defines how an asynchronous operation completes.
+   */
+  private final class AsyncOutcome<R> implements AsyncOutcomeDefinition<T, R> {
+
+    private final AsyncOperation<? super T, ? extends R> operation;
+    private final Duration timeout;
+
+    private AsyncOutcome(AsyncOperation<? super T, ? extends R> operation, Duration timeout) {
+      this.operation = operation;
+      this.timeout = timeout;
+    }
+
+    @Override
+    public AsyncOutcomeDefinition<T, R> within(Duration timeout) {
+      return new AsyncOutcome<>(operation, timeout);
+    }
+
+    @Override
+    public Spectacle<T> willComplete() {
+      return complete((result, error) -> {
+        if (error != null) {
+          throw error;
+        }
+      });
+    }
+
+    @Override
+    public Spectacle<T> willCompleteWith(R value) {
+      return complete((result, error) -> {
+        if (error != null) {
+          throw error;
+        }
+        if (!Objects.equals(value, result)) {
+          throw new Violation(value, result);
+        }
+      });
+    }
+
+    @Override
+    public Spectacle<T> willCompleteExceptionally() {
+      return complete((result, error) -> {
+        if (error == null) {
+          throw new Violation(String.format("completed with %s", result));
+        }
+      });
+    }
+
+    @Override
+    public Spectacle<T> willCompleteExceptionally(Class<? extends Throwable> exceptionClass) {
+      return complete((result, error) -> {
+        if (error == null) {
+          throw new Violation(String.format("completed with %s", result));
+        }
+        if (!exceptionClass.isInstance(error)) {
+          throw new Violation(error);
+        }
+      });
+    }
+
+    private Spectacle<T> complete(Completion<R> completion) {
+      stage.checkAsync();
+      return perform(Event.Kind.THEN, true, target -> await(operation.execute(target), timeout, completion));
+    }
+
+  }
+
+  /**
+   * A statement bound to the spec that defined it.
+   */
+  static final class Step<T> implements Runnable {
+
+    private final Spec<T> spec;
+    private final Event.Kind kind;
+    private final boolean targeted;
+    private final Statement<T> statement;
+    private final Polling polling;
+    private final Duration timeout;
+
+    private Step(Spec<T> spec, Event.Kind kind, boolean targeted, Statement<T> statement) {
+      this.spec = spec;
+      this.kind = kind;
+      this.targeted = targeted;
+      this.statement = statement;
+      this.polling = spec.polling;
+      this.timeout = spec.timeout == null ? DEFAULT_TIMEOUT : spec.timeout;
+    }
+
+    /**
+     * @return the supplier of the target object this step uses
+     */
+    Object scope() {
+      return spec.supplier;
+    }
+
+    /**
+     * Runs this step using the target object of the spec that defined it.
+     */
+    @Override
+    public void run() {
+      settle(true, null);
+    }
+
+    /**
+     * Runs this step against the given target object.
+     *
+     * @param target the target object
+     */
+    void evaluate(T target) {
+      settle(false, target);
+    }
+
+    /**
+     * Checks the given target object against this step, collecting the failure
+     * instead of reporting it.
+     *
+     * @param target the target object
+     * @return the failure, or {@code null} if the statement is followed
+     */
+    Failure check(T target) {
+      if (kind != Event.Kind.EXPECT && kind != Event.Kind.THEN && Tape.replaying()) {
+        return null;
+      }
+      return conclude(false, target);
+    }
+
+    private void settle(boolean supplied, T target) {
+      Failure failure = conclude(supplied, target);
+      if (failure != null) {
+        spec.stage.fail(failure);
+      }
+    }
+
+    private Failure conclude(boolean supplied, T target) {
+      if (!Reporting.active()) {
+        Throwable failure = timeout == null ? outcome(supplied, target) : timed(supplied, target);
+        return failure == null ? null : spec.failure(failure);
+      }
+      long start = System.nanoTime();
+      Throwable throwable = timeout == null ? outcome(supplied, target) : timed(supplied, target);
+      long nanos = System.nanoTime() - start;
+      Failure failure = throwable == null ? null : spec.failure(throwable);
+      Reporting.publish(spec.scenario, spec.reason, kind, failure, nanos);
+      return failure;
+    }
+
+    /**
+     * Runs this step in a thread of its own, interrupting it if the timeout
+     * expires. The stack of the stuck thread is kept as the cause of the failure.
+     */
+    private Throwable timed(boolean supplied, T target) {
+      AtomicReference<Thread> worker = new AtomicReference<>();
+      Tape tape = Tape.current();
+      Future<Throwable> future = Timeouts.EXECUTOR.submit(() -> {
+        worker.set(Thread.currentThread());
+        Tape previous = Tape.attach(tape);
+        try {
+          return outcome(supplied, target);
+        } finally {
+          Tape.attach(previous);
+          worker.set(null);
+        }
+      });
+      try {
+        return future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e) {
+        Thread thread = worker.get();
+        StackTraceElement[] stack = thread == null ? new StackTraceElement[0] : thread.getStackTrace();
+        future.cancel(true);
+        String detail = String.format("not completed within %s", Latency.format(timeout.toNanos()));
+        if (thread == null) {
+          return new Violation(detail);
+        }
+        TimeoutException stuck = new TimeoutException(String.format("%s interrupted%s", thread.getName(),
+            stack.length == 0 ? "" : " at " + stack[0]));
+        stuck.setStackTrace(stack);
+        return new Violation(detail, null, null, stuck);
+      } catch (InterruptedException e) {
+        future.cancel(true);
+        Thread.currentThread().interrupt();
+        return e;
+      } catch (ExecutionException e) {
+        return e.getCause();
+      }
+    }
+
+    private Throwable outcome(boolean supplied, T target) {
+      Throwable failure = attempt(supplied, target);
+      if (failure != null && polling != null) {
+        long deadline = polling.deadline();
+        for (int attempts = 1; failure != null && polling.await(attempts, deadline); attempts++) {
+          failure = attempt(supplied, target);
+        }
+      }
+      return failure;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Throwable attempt(boolean supplied, T target) {
+      try {
+        if (supplied && targeted && spec.supplier instanceof Generated) {
+          Generated.Counterexample<T> counterexample =
+              ((Generated<T>) spec.supplier).check(value -> attempt(false, value));
+          return counterexample == null ? null : counterexample(counterexample);
+        }
+        statement.run(supplied ? (targeted ? spec.supplier.get() : null) : target);
+        return null;
+      } catch (Throwable throwable) {
+        return throwable;
+      }
+    }
+
+    /**
+     * Tests if the given target object follows this step, without reporting failures.
+     *
+     * @param target the target object
+     * @return {@code true} if the statement is followed
+     */
+    boolean test(T target) {
+      try {
+        statement.run(target);
+        return true;
+      } catch (Throwable throwable) {
+        return false;
+      }
+    }
+
+  }
+
+  /**
+   * Parses the value of the {@value #TIMEOUT_PROPERTY} property.
+   *
+   * @param value the value of the property
+   * @return the timeout, or {@code null} if the value is not set
+   * @throws IllegalArgumentException if the value is not a positive ISO-8601 duration
+   */
+  static Duration defaultTimeout(String value) {
+    if (value == null || value.isEmpty()) {
+      return null;
+    }
+    Duration timeout;
+    try {
+      timeout = Duration.parse(value);
+    } catch (DateTimeParseException e) {
+      timeout = null;
+    }
+    if (timeout == null || timeout.isNegative() || timeout.isZero()) {
+      throw new IllegalArgumentException(String.format(
+          "Invalid %s: %s (expected a positive ISO-8601 duration like PT30S)", TIMEOUT_PROPERTY, value));
+    }
+    return timeout;
+  }
+
+  /**
+   * Holds the executor that runs the statements with a timeout, so it's created
+   * only when a statement needs it.
+   */
+  private static final class Timeouts {
+
+    private static final ExecutorService EXECUTOR =
+        Executors.newCachedThreadPool(Threads.factory("spectaculous-statement-", true));
+
+  }
+
+  /**
+   * A statement of a spec.
+   */
+  @FunctionalInterface
+  private interface Statement<T> {
+
+    /**
+     * Runs this statement.
+     *
+     * @param target the target object, or {@code null} if the statement doesn't require it
+     * @throws Violation if the statement is not followed
+     * @throws Throwable if anything unexpected happens
+     */
+    void run(T target) throws Throwable;
+
+  }
+
+  /**
+   * Checks how an asynchronous operation completed.
+   */
+  @FunctionalInterface
+  private interface Completion<R> {
+
+    /**
+     * Checks the completion of an operation.
+     *
+     * @param result the result, or {@code null} if the operation completed exceptionally
+     * @param error  the exception, or {@code null} if the operation completed normally
+     * @throws Violation if the statement is not followed
+     * @throws Throwable if anything unexpected happens
+     */
+    void check(R result, Throwable error) throws Throwable;
+
+  }
+
+  /**
+   * Signals that a statement was not followed.
+   */
+  private static final class Violation extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String detail;
+    private final Object expected;
+    private final Object actual;
+
+    private Violation() {
+      this(null, null, null, null);
+    }
+
+    private Violation(String detail) {
+      this(detail, null, null, null);
+    }
+
+    private Violation(Throwable cause) {
+      this(null, null, null, cause);
+    }
+
+    private Violation(Object expected, Object actual) {
+      this(null, expected, actual, null);
+    }
+
+    private Violation(String detail, Object expected, Object actual, Throwable cause) {
+      super(null, cause, false, false);
+      this.detail = detail;
+      this.expected = expected;
+      this.actual = actual;
+    }
+
+  }
+
+}
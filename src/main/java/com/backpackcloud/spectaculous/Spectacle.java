@@ -26,7 +26,12 @@ package com.backpackcloud.spectaculous;
 
 import org.hamcrest.Matcher;
 
-import java.util.Objects;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.DoublePredicate;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -55,6 +60,40 @@ public interface Spectacle<T> {
    */
   Spectacle<T> given(Supplier<T> supplier);
 
+  /**
+   * Replaces the target object with the ones generated by the given generator.
+   * Each of the following statements is checked against all generated objects,
+   * and the simplest one that doesn't follow a statement is quoted in the failure.
+   *
+   * @param gen the generator of target objects
+   * @return a new Spectacle that uses the given generator.
+   * @see Gen
+   */
+  Spectacle<T> given(Gen<T> gen);
+
+  /**
+   * Replaces the target object with the one returned by the given supplier. The
+   * supplier is called only once, when a statement first needs the target object,
+   * and the object is kept for the following statements.
+   * <p>
+   * The object is released when it's replaced by another one or when the
+   * returned Spectacle is released, once the statements that use it, including
+   * the asynchronous ones, completed. If it's an AutoCloseable, it's also closed.
+   *
+   * @param supplier the new supplier for the target object.
+   * @return a new Spectacle that uses the given supplier.
+   */
+  Releasable<T> givenOnce(Supplier<T> supplier);
+
+  /**
+   * Works like {@link #givenOnce(Supplier)} but is safe to use when the following
+   * statements run in concurrent threads. The supplier is still called only once.
+   *
+   * @param supplier the new supplier for the target object.
+   * @return a new Spectacle that uses the given supplier.
+   */
+  Releasable<T> givenShared(Supplier<T> supplier);
+
   /**
    * Adds a reason to the following statements. The reason will be used to
    * compose the exception text in case of failure to follow the spec.
@@ -64,6 +103,29 @@ public interface Spectacle<T> {
    */
   Spectacle<T> because(String reason);
 
+  /**
+   * Retries the next statement until it's followed or the polling deadline
+   * expires. The target object is requested again for each attempt.
+   *
+   * @param polling how the next statement should be retried
+   * @return a new Spectacle that retries the next statement
+   */
+  Spectacle<T> eventually(Polling polling);
+
+  /**
+   * Fails the next statement if it doesn't complete within the given timeout.
+   * The statement runs in another thread, a virtual one if the runtime supports
+   * them, which is interrupted when the timeout expires. The failure has the
+   * stack of the stuck thread as its cause.
+   * <p>
+   * Statements without a timeout use the one set by the system property
+   * {@value Spec#TIMEOUT_PROPERTY}, if any.
+   *
+   * @param timeout how long the next statement can take
+   * @return a new Spectacle that times out the next statement
+   */
+  Spectacle<T> within(Duration timeout);
+
   /**
    * Starts a statement that defines an exception that must be thrown.
    *
@@ -87,7 +149,7 @@ public interface Spectacle<T> {
    * @return a component for defining the target to test.
    */
   default <R> StatementOperationDefinition<T, R> expect(Supplier<R> supplier) {
-    return expect(r -> Objects.equals(r, supplier.get()));
+    return expect(Expectation.equalTo(supplier));
   }
 
   /**
@@ -97,7 +159,7 @@ public interface Spectacle<T> {
    * @return a component for defining the target to test.
    */
   default <R> StatementOperationDefinition<T, R> expect(Matcher<? super R> matcher) {
-    return expect(matcher::matches);
+    return expect(Expectation.matching(matcher));
   }
 
   /**
@@ -110,6 +172,99 @@ public interface Spectacle<T> {
     return expect(() -> value);
   }
 
+  /**
+   * Starts a statement that defines an {@code int} that is expected. Neither the
+   * expected value nor the result of the operation is boxed.
+   * <p>
+   * Unlike {@link #expect(Object)}, the operation must return an {@code int}, so
+   * it can't return {@code null}.
+   *
+   * @param value the expected value
+   * @return a component for defining the target to test.
+   */
+  IntStatementDefinition<T> expectInt(int value);
+
+  /**
+   * Starts a statement that defines a {@code long} that is expected. Neither the
+   * expected value nor the result of the operation is boxed.
+   *
+   * @param value the expected value
+   * @return a component for defining the target to test.
+   */
+  LongStatementDefinition<T> expectLong(long value);
+
+  /**
+   * Starts a statement that defines a {@code double} that is expected. The values
+   * are compared like {@link Double#equals(Object)} does, but without boxing.
+   *
+   * @param value the expected value
+   * @return a component for defining the target to test.
+   * @see #expectClose(double, double)
+   */
+  DoubleStatementDefinition<T> expectDouble(double value);
+
+  /**
+   * Starts a statement that defines a {@code double} that is expected, allowing
+   * the result to differ from it by the given epsilon.
+   *
+   * @param value   the expected value
+   * @param epsilon the maximum difference from the expected value
+   * @return a component for defining the target to test.
+   */
+  DoubleStatementDefinition<T> expectClose(double value, double epsilon);
+
+  /**
+   * Starts a statement that defines a predicate that should be tested against an
+   * {@code int}, without boxing it.
+   *
+   * @param predicate the predicate to test
+   * @return a component for defining the target of the test.
+   */
+  IntStatementDefinition<T> expectInt(IntPredicate predicate);
+
+  /**
+   * Starts a statement that defines a predicate that should be tested against a
+   * {@code long}, without boxing it.
+   *
+   * @param predicate the predicate to test
+   * @return a component for defining the target of the test.
+   */
+  LongStatementDefinition<T> expectLong(LongPredicate predicate);
+
+  /**
+   * Starts a statement that defines a predicate that should be tested against a
+   * {@code double}, without boxing it.
+   *
+   * @param predicate the predicate to test
+   * @return a component for defining the target of the test.
+   */
+  DoubleStatementDefinition<T> expectDouble(DoublePredicate predicate);
+
+  /**
+   * Starts a statement that defines a measure the operation should satisfy.
+   *
+   * @param measure the measure to check, like a {@link Latency}
+   * @return a component for defining the target to measure.
+   */
+  StatementMeasureDefinition<T> expect(Measure measure);
+
+  /**
+   * Starts a statement that defines a workload the target should sustain.
+   *
+   * @param workload the workload to drive, like a {@link Throughput}
+   * @return a component for defining the action to drive.
+   */
+  StatementWorkloadDefinition<T> expectWorkload(Workload workload);
+
+  /**
+   * Starts a statement that defines how the time an operation takes may grow
+   * with the size of its input. The statement doesn't use the target object.
+   *
+   * @param complexity the complexity the operation should have, like {@link Complexity#linear()}
+   * @return a component for defining the inputs of each size.
+   */
+  StatementComplexityDefinition<T> expect(Complexity complexity);
+
   /**
    * Defines an action statement that takes the target object.
    *
@@ -126,6 +281,16 @@ public interface Spectacle<T> {
    */
   OutcomeDefinition<T> then(Action action);
 
+  /**
+   * Defines a statement that runs a mix of actions against the target object from
+   * concurrent threads. The target object is shared by all threads, so the
+   * following statements can check the invariants it should keep.
+   *
+   * @param stress the mix of actions to run
+   * @return a component for defining the outcome
+   */
+  OutcomeDefinition<T> then(Stress<? super T> stress);
+
   /**
    * Waits until the given action is run.
    *
@@ -142,6 +307,56 @@ public interface Spectacle<T> {
    */
   Spectacle<T> waitFor(TargetedAction<? super T> action);
 
+  /**
+   * Defines a statement about how an asynchronous operation completes. The
+   * statement doesn't block: the outcome is checked when the operation completes,
+   * and failures are reported when the spec is verified.
+   * <p>
+   * A spec that throws at the first failure also throws it from the first
+   * statement defined after the operation completed. The failure of an operation
+   * that completes after the last statement is only reported by {@link #verify()}
+   * or {@link #verifyAsync()}, so it's lost if the spec is not verified.
+   *
+   * @param operation the operation to start
+   * @return a component for defining the outcome
+   * @see #verifyAsync()
+   */
+  <R> AsyncOutcomeDefinition<T, R> thenAsync(AsyncOperation<? super T, ? extends R> operation);
+
+  /**
+   * Verifies this spec and ends it. Statements that were recorded instead of
+   * performed, like the ones of a {@link Spec#plan(String) plan}, run at this point
+   * and failures that were collected, like the ones of a {@link Spec#softly(String)
+   * soft spec}, are reported together.
+   *
+   * @throws SpectacularException if any statement is not followed
+   */
+  void verify();
+
+  /**
+   * Verifies this spec once all asynchronous statements completed, without
+   * blocking the current thread.
+   *
+   * @return a future that completes when this spec is verified, exceptionally
+   * with a {@link SpectacularException} if any statement is not followed
+   */
+  CompletableFuture<Void> verifyAsync();
+
+  /**
+   * A Spectacle that keeps the target object built by {@link #givenOnce(Supplier)}
+   * or {@link #givenShared(Supplier)}.
+   */
+  interface Releasable<T> extends Spectacle<T> {
+
+    /**
+     * Releases the target object, closing it if it's an AutoCloseable, once the
+     * statements that use it completed. The next statement that needs the target
+     * object builds it again.
+     */
+    void release();
+
+  }
+
   /**
    * Interface for defining the outcome of a statement.
    */
@@ -207,6 +422,199 @@ public interface Spectacle<T> {
      */
     Spectacle<T> from(Operation<? super T, R> operation);
 
+    /**
+     * Defines an asynchronous operation to do with the target object. The
+     * result is tested when the operation completes, which should happen
+     * within {@value Spec#ASYNC_TIMEOUT_SECONDS} seconds.
+     *
+     * @param operation the operation
+     * @return the Spectacle instance
+     * @see Spectacle#verifyAsync()
+     */
+    Spectacle<T> fromAsync(AsyncOperation<? super T, ? extends R> operation);
+
+    /**
+     * Defines an asynchronous operation to do with the target object, which
+     * should complete within the given timeout.
+     *
+     * @param operation the operation
+     * @param timeout   how long the operation can take to complete
+     * @return the Spectacle instance
+     * @see Spectacle#verifyAsync()
+     */
+    Spectacle<T> fromAsync(AsyncOperation<? super T, ? extends R> operation, Duration timeout);
+
+  }
+
+  /**
+   * Interface for defining the operation of a statement about an {@code int}.
+   */
+  @FunctionalInterface
+  interface IntStatementDefinition<T> {
+
+    /**
+     * Defines the operation to do with the target object
+     *
+     * @param operation the operation
+     * @return the Spectacle instance
+     */
+    Spectacle<T> from(IntOperation<? super T> operation);
+
+  }
+
+  /**
+   * Interface for defining the operation of a statement about a {@code long}.
+   */
+  @FunctionalInterface
+  interface LongStatementDefinition<T> {
+
+    /**
+     * Defines the operation to do with the target object
+     *
+     * @param operation the operation
+     * @return the Spectacle instance
+     */
+    Spectacle<T> from(LongOperation<? super T> operation);
+
+  }
+
+  /**
+   * Interface for defining the operation of a statement about a {@code double}.
+   */
+  @FunctionalInterface
+  interface DoubleStatementDefinition<T> {
+
+    /**
+     * Defines the operation to do with the target object
+     *
+     * @param operation the operation
+     * @return the Spectacle instance
+     */
+    Spectacle<T> from(DoubleOperation<? super T> operation);
+
+  }
+
+  /**
+   * Interface for defining how an asynchronous operation completes.
+   */
+  interface AsyncOutcomeDefinition<T, R> {
+
+    /**
+     * Sets how long the operation can take to complete. Defaults to
+     * {@value Spec#ASYNC_TIMEOUT_SECONDS} seconds.
+     *
+     * @param timeout the timeout
+     * @return a new AsyncOutcomeDefinition that uses the given timeout
+     */
+    AsyncOutcomeDefinition<T, R> within(Duration timeout);
+
+    /**
+     * The operation will complete normally, with any value.
+     *
+     * @return the Spectacle instance
+     */
+    Spectacle<T> willComplete();
+
+    /**
+     * The operation will complete normally, with the given value.
+     *
+     * @param value the expected value
+     * @return the Spectacle instance
+     */
+    Spectacle<T> willCompleteWith(R value);
+
+    /**
+     * The operation will complete exceptionally, with any exception.
+     *
+     * @return the Spectacle instance
+     */
+    Spectacle<T> willCompleteExceptionally();
+
+    /**
+     * The operation will complete exceptionally, with a specific exception.
+     *
+     * @param exceptionClass the type of the exception
+     * @return the Spectacle instance
+     */
+    Spectacle<T> willCompleteExceptionally(Class<? extends Throwable> exceptionClass);
+
+  }
+
+  /**
+   * Interface for defining what a measure statement should measure.
+   */
+  interface StatementMeasureDefinition<T> {
+
+    /**
+     * Defines the operation to measure with the target object.
+     *
+     * @param operation the operation
+     * @return the Spectacle instance
+     */
+    Spectacle<T> from(Operation<? super T, ?> operation);
+
+    /**
+     * Defines an action to measure that doesn't require the target object.
+     *
+     * @param action the action
+     * @return the Spectacle instance
+     */
+    Spectacle<T> from(Action action);
+
+  }
+
+  /**
+   * Interface for defining the inputs of a complexity statement.
+   */
+  interface StatementComplexityDefinition<T> {
+
+    /**
+     * Defines how the inputs of each size are built. A new input is built
+     * every time the operation runs.
+     *
+     * @param input the function that builds an input of the given size
+     * @return a component for defining the operation to time.
+     */
+    SizedStatementDefinition<T> given(IntFunction<? extends T> input);
+
+  }
+
+  /**
+   * Interface for defining the operation of a complexity statement.
+   */
+  interface SizedStatementDefinition<T> {
+
+    /**
+     * Defines the operation to time with the inputs of each size.
+     *
+     * @param operation the operation
+     * @return the Spectacle instance
+     */
+    Spectacle<T> from(Operation<? super T, ?> operation);
+
+  }
+
+  /**
+   * Interface for defining what a workload statement should drive.
+   */
+  interface StatementWorkloadDefinition<T> {
+
+    /**
+     * Defines the action to drive against the target object.
+     *
+     * @param action the action
+     * @return the Spectacle instance
+     */
+    Spectacle<T> from(TargetedAction<? super T> action);
+
+    /**
+     * Defines an action to drive that doesn't require the target object.
+     *
+     * @param action the action
+     * @return the Spectacle instance
+     */
+    Spectacle<T> from(Action action);
+
   }
 
 }
@@ -24,21 +24,85 @@
 
 package com.backpackcloud.spectaculous;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Base exception for Spectaculous
+ * <p>
+ * The failures refer to whatever the statements involved, so they are not
+ * serialized: a deserialized exception keeps its message but has no failures.
  */
 public class SpectacularException extends RuntimeException {
 
+  private static final long serialVersionUID = 1L;
+
+  private transient List<Failure> failures;
+  private String message;
+
   public SpectacularException(String message) {
     super(message);
+    this.failures = Collections.emptyList();
   }
 
   public SpectacularException(Throwable cause) {
     super(cause);
+    this.failures = Collections.emptyList();
   }
 
   public SpectacularException(String message, Throwable cause) {
     super(message, cause);
+    this.failures = Collections.emptyList();
+  }
+
+  /**
+   * Creates an exception for the given failure. The message is built from the
+   * failure only when it's requested.
+   *
+   * @param failure            the failure
+   * @param writableStackTrace if the stack trace should be captured
+   */
+  SpectacularException(Failure failure, boolean writableStackTrace) {
+    super(null, failure.cause(), true, writableStackTrace);
+    this.failures = Collections.singletonList(failure);
+  }
+
+  SpectacularException(String message, List<Failure> failures) {
+    super(message);
+    this.failures = Collections.unmodifiableList(failures);
+  }
+
+  @Override
+  public String getMessage() {
+    String result = super.getMessage();
+    if (result == null) {
+      result = message;
+      if (result == null && failures.size() == 1) {
+        result = failures.get(0).toString();
+        message = result;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the statements that were not followed
+   */
+  public List<Failure> failures() {
+    return failures;
+  }
+
+  private void writeObject(ObjectOutputStream output) throws IOException {
+    getMessage();
+    output.defaultWriteObject();
+  }
+
+  private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+    input.defaultReadObject();
+    failures = Collections.emptyList();
   }
 
 }
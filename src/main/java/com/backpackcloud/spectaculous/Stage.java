@@ -0,0 +1,297 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Holds what is shared by all the statements of a spec: how they run and what
+ * happens when they are not followed.
+ */
+final class Stage {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final Plan plan;
+  private final List<Spec.Step<?>> steps;
+  private final boolean collecting;
+  private final boolean stackless;
+
+  private Failure[] failures;
+  private int size;
+  private int statements;
+  private List<CompletableFuture<Failure>> pending;
+
+  private Stage(Plan plan, List<Spec.Step<?>> steps, boolean collecting, boolean stackless) {
+    this.plan = plan;
+    this.steps = steps;
+    this.collecting = collecting;
+    this.stackless = stackless;
+  }
+
+  /**
+   * Performs the given step, or records it if the statements are planned or
+   * being compiled. If failures are thrown right away, the failure of an
+   * asynchronous statement that already completed is thrown before the step
+   * is performed.
+   *
+   * @param step the step to perform
+   */
+  void perform(Spec.Step<?> step) {
+    statements++;
+    if (steps != null) {
+      steps.add(step);
+    } else if (plan != null) {
+      plan.record(step.scope(), step);
+    } else {
+      if (!collecting && pending != null) {
+        failCompleted();
+      }
+      step.run();
+    }
+  }
+
+  /**
+   * Fails with the first asynchronous statement that already completed without
+   * being followed. The completed statements are no longer awaited.
+   */
+  private void failCompleted() {
+    Failure failure = null;
+    synchronized (this) {
+      if (pending == null) {
+        return;
+      }
+      for (Iterator<CompletableFuture<Failure>> iterator = pending.iterator(); iterator.hasNext(); ) {
+        CompletableFuture<Failure> completion = iterator.next();
+        if (completion.isDone()) {
+          iterator.remove();
+          failure = completion.join();
+          if (failure != null) {
+            break;
+          }
+        }
+      }
+    }
+    if (failure != null) {
+      fail(failure);
+    }
+  }
+
+  /**
+   * @return how many statements were defined so far
+   */
+  int statements() {
+    return statements;
+  }
+
+  /**
+   * @return {@code true} if the statements are recorded instead of performed
+   */
+  boolean deferred() {
+    return plan != null || steps != null;
+  }
+
+  /**
+   * Checks if a target object can be given to the spec.
+   *
+   * @throws IllegalStateException if the statements are being compiled
+   */
+  void checkGiven() {
+    if (steps != null) {
+      throw new IllegalStateException("Compiled specs take the target object when evaluated");
+    }
+  }
+
+  /**
+   * Checks if asynchronous statements can be defined.
+   *
+   * @throws IllegalStateException if the statements are being compiled
+   */
+  void checkAsync() {
+    if (steps != null) {
+      throw new IllegalStateException("Compiled specs can't have asynchronous statements");
+    }
+  }
+
+  /**
+   * Keeps track of an asynchronous statement, whose failure is reported when the
+   * spec is verified.
+   *
+   * @param completion the future that completes with the failure of the
+   *                   statement, or with {@code null} if it was followed
+   */
+  void await(CompletableFuture<Failure> completion) {
+    synchronized (this) {
+      if (pending == null) {
+        pending = new ArrayList<>();
+      }
+      pending.add(completion);
+    }
+  }
+
+  /**
+   * @return a future that completes when all asynchronous statements defined so
+   * far are completed
+   */
+  CompletableFuture<Void> settled() {
+    synchronized (this) {
+      return pending == null
+          ? CompletableFuture.completedFuture(null)
+          : CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0]));
+    }
+  }
+
+  /**
+   * @return the steps recorded while compiling the statements
+   */
+  List<Spec.Step<?>> steps() {
+    return steps;
+  }
+
+  /**
+   * Handles a statement that was not followed, either throwing an exception right
+   * away or collecting the failure to be reported when the spec is verified.
+   *
+   * @param failure the failure
+   */
+  void fail(Failure failure) {
+    if (!collecting) {
+      throw new SpectacularException(failure, !stackless);
+    }
+    synchronized (this) {
+      if (failures == null) {
+        failures = new Failure[INITIAL_CAPACITY];
+      } else if (size == failures.length) {
+        Failure[] grown = new Failure[size * 2];
+        System.arraycopy(failures, 0, grown, 0, size);
+        failures = grown;
+      }
+      failures[size++] = failure;
+    }
+  }
+
+  /**
+   * Runs the planned statements, waits for the asynchronous ones and reports
+   * all failures.
+   *
+   * @param scenario the scenario of the spec
+   * @throws SpectacularException if any statement was not followed
+   */
+  void verify(String scenario) {
+    List<Failure> reported = new ArrayList<>();
+    List<Throwable> suppressed = new ArrayList<>();
+    String summary = null;
+    if (plan != null) {
+      int segments = plan.size();
+      for (Throwable error : plan.run()) {
+        suppressed.add(error);
+        if (error instanceof SpectacularException && !((SpectacularException) error).failures().isEmpty()) {
+          reported.addAll(((SpectacularException) error).failures());
+        } else {
+          reported.add(new Failure(scenario, "", null, null, null, error));
+        }
+      }
+      if (!suppressed.isEmpty()) {
+        summary = String.format("%s (%d of %d segments failed)", scenario, suppressed.size(), segments);
+      }
+    }
+    List<CompletableFuture<Failure>> awaited;
+    synchronized (this) {
+      for (int i = 0; i < size; i++) {
+        reported.add(failures[i]);
+      }
+      failures = null;
+      size = 0;
+      awaited = pending;
+      pending = null;
+    }
+    if (awaited != null) {
+      for (CompletableFuture<Failure> completion : awaited) {
+        Failure failure = completion.join();
+        if (failure != null) {
+          reported.add(failure);
+        }
+      }
+    }
+    if (reported.isEmpty()) {
+      return;
+    }
+    StringBuilder message = new StringBuilder(summary != null
+        ? summary
+        : String.format("%s (%d statements failed)", scenario, reported.size()));
+    for (Failure failure : reported) {
+      message.append(System.lineSeparator()).append("  - ").append(failure);
+    }
+    SpectacularException exception = new SpectacularException(message.toString(), reported);
+    suppressed.forEach(exception::addSuppressed);
+    throw exception;
+  }
+
+  /**
+   * @return a copy of this Stage that reports failures with exceptions that
+   * don't capture the stack trace
+   */
+  Stage stackless() {
+    Stage stage = new Stage(plan, steps, collecting, true);
+    stage.statements = statements;
+    return stage;
+  }
+
+  /**
+   * @return a Stage that performs statements right away and throws an exception
+   * at the first failure
+   */
+  static Stage immediate() {
+    return new Stage(null, null, false, false);
+  }
+
+  /**
+   * @return a Stage that performs statements right away and collects failures
+   * until the spec is verified
+   */
+  static Stage collecting() {
+    return new Stage(null, null, true, false);
+  }
+
+  /**
+   * @param executor the executor for running the segments of the plan
+   * @return a Stage that records statements into a plan
+   */
+  static Stage planned(Executor executor) {
+    return new Stage(new Plan(executor), null, false, false);
+  }
+
+  /**
+   * @return a Stage that records statements to be compiled
+   */
+  static Stage compiling() {
+    return new Stage(null, new ArrayList<>(), false, false);
+  }
+
+}
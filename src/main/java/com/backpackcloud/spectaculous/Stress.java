@@ -0,0 +1,236 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Defines a mix of actions that hammer the target of a Spec from concurrent
+ * threads, looking for race conditions.
+ * <p>
+ * All threads wait on a shared gate and start at the same time. Each thread
+ * runs a number of iterations, picking one of the actions by weight on each of
+ * them. The random choices come from the seed, so a failed run can be repeated
+ * by fixing the seed quoted in the failure.
+ *
+ * @param <T> the type of the target object
+ */
+public final class Stress<T> {
+
+  private final List<TargetedAction<? super T>> actions;
+  private final int[] weights;
+  private final int threads;
+  private final boolean virtual;
+  private final int iterations;
+  private final Long seed;
+
+  private Stress(List<TargetedAction<? super T>> actions, int[] weights, int threads, boolean virtual,
+                 int iterations, Long seed) {
+    if (threads < 1 || iterations < 1) {
+      throw new IllegalArgumentException("Invalid thread or iteration count");
+    }
+    this.actions = actions;
+    this.weights = weights;
+    this.threads = threads;
+    this.virtual = virtual;
+    this.iterations = iterations;
+    this.seed = seed;
+  }
+
+  /**
+   * Adds an action to the mix.
+   *
+   * @param weight how likely the action is to be picked, relative to the others
+   * @param action the action
+   * @return a new Stress that includes the given action
+   */
+  public Stress<T> with(int weight, TargetedAction<? super T> action) {
+    if (weight < 1) {
+      throw new IllegalArgumentException("Invalid weight: " + weight);
+    }
+    List<TargetedAction<? super T>> newActions = new ArrayList<>(actions);
+    newActions.add(action);
+    int[] newWeights = new int[weights.length + 1];
+    System.arraycopy(weights, 0, newWeights, 0, weights.length);
+    newWeights[weights.length] = (weights.length == 0 ? 0 : weights[weights.length - 1]) + weight;
+    return new Stress<>(Collections.<TargetedAction<? super T>>unmodifiableList(newActions), newWeights, threads, virtual, iterations, seed);
+  }
+
+  /**
+   * Sets how many threads run the actions. Defaults to the number of available processors.
+   *
+   * @param threads the number of threads
+   * @return a new Stress that uses the given number of threads
+   */
+  public Stress<T> threads(int threads) {
+    return new Stress<>(actions, weights, threads, virtual, iterations, seed);
+  }
+
+  /**
+   * Uses virtual threads if the runtime supports them.
+   *
+   * @return a new Stress that uses virtual threads
+   */
+  public Stress<T> virtualThreads() {
+    return new Stress<>(actions, weights, threads, true, iterations, seed);
+  }
+
+  /**
+   * Sets how many actions each thread runs. Defaults to 1000.
+   *
+   * @param iterations the number of iterations of each thread
+   * @return a new Stress that uses the given number of iterations
+   */
+  public Stress<T> iterations(int iterations) {
+    return new Stress<>(actions, weights, threads, virtual, iterations, seed);
+  }
+
+  /**
+   * Fixes the seed of the random choices. Defaults to a new seed for each run.
+   *
+   * @param seed the seed
+   * @return a new Stress that uses the given seed
+   */
+  public Stress<T> seed(long seed) {
+    return new Stress<>(actions, weights, threads, virtual, iterations, seed);
+  }
+
+  /**
+   * Runs the actions against the given target object.
+   *
+   * @param target the target object
+   * @return the report of the run
+   * @throws InterruptedException if the current thread is interrupted while waiting
+   */
+  Report run(T target) throws InterruptedException {
+    if (actions.isEmpty()) {
+      throw new IllegalStateException("No action to stress");
+    }
+    long runSeed = seed != null ? seed : System.nanoTime();
+    SplittableRandom root = new SplittableRandom(runSeed);
+    ThreadFactory factory = Threads.factory("spectaculous-stress-", virtual);
+    CountDownLatch gate = new CountDownLatch(1);
+    AtomicReference<String> failedAt = new AtomicReference<>();
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    int total = weights[weights.length - 1];
+    Thread[] workers = new Thread[threads];
+
+    for (int i = 0; i < threads; i++) {
+      int index = i;
+      SplittableRandom random = root.split();
+      workers[i] = factory.newThread(() -> {
+        try {
+          gate.await();
+          for (int iteration = 0; iteration < iterations && failure.get() == null; iteration++) {
+            TargetedAction<? super T> action = pick(random.nextInt(total));
+            try {
+              action.run(target);
+            } catch (Throwable e) {
+              if (failure.compareAndSet(null, e)) {
+                failedAt.set(String.format(Locale.ROOT, ", thread %d failed at iteration %d", index, iteration));
+              }
+            }
+          }
+        } catch (InterruptedException e) {
+          failure.compareAndSet(null, e);
+        }
+      });
+      workers[i].start();
+    }
+
+    gate.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    String report = String.format(Locale.ROOT, "seed=%d, %d threads x %d iterations%s",
+        runSeed, threads, iterations, failedAt.get() == null ? "" : failedAt.get());
+    return new Report(failure.get(), report);
+  }
+
+  private TargetedAction<? super T> pick(int value) {
+    for (int i = 0; i < weights.length; i++) {
+      if (value < weights[i]) {
+        return actions.get(i);
+      }
+    }
+    return actions.get(actions.size() - 1);
+  }
+
+  /**
+   * Starts a new Stress with the given action.
+   *
+   * @param action the action
+   * @return a new Stress
+   */
+  public static <T> Stress<T> of(TargetedAction<? super T> action) {
+    return Stress.<T>mix().with(1, action);
+  }
+
+  /**
+   * Starts a new Stress without actions. Use {@link #with(int, TargetedAction)}
+   * to add them.
+   *
+   * @return a new Stress
+   */
+  public static <T> Stress<T> mix() {
+    return new Stress<>(Collections.emptyList(), new int[0], Runtime.getRuntime().availableProcessors(),
+        false, 1000, null);
+  }
+
+  /**
+   * The report of a run.
+   */
+  static final class Report {
+
+    private final Throwable failure;
+    private final String description;
+
+    private Report(Throwable failure, String description) {
+      this.failure = failure;
+      this.description = description;
+    }
+
+    /**
+     * @return the first throwable thrown by an action, or {@code null} if none was thrown
+     */
+    Throwable failure() {
+      return failure;
+    }
+
+    @Override
+    public String toString() {
+      return description;
+    }
+
+  }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Summarizes how the elements of a dataset followed the statements of a
+ * {@link CompiledSpec}: how many elements failed each statement and the first
+ * failures of each one.
+ */
+public final class Summary {
+
+  private final String scenario;
+  private final long count;
+  private final long passed;
+  private final long[] failed;
+  private final List<List<Failure>> failures;
+
+  Summary(String scenario, long count, long passed, long[] failed, List<List<Failure>> failures) {
+    this.scenario = scenario;
+    this.count = count;
+    this.passed = passed;
+    this.failed = failed;
+    this.failures = failures;
+  }
+
+  /**
+   * @return how many elements were checked
+   */
+  public long count() {
+    return count;
+  }
+
+  /**
+   * @return how many elements followed all statements
+   */
+  public long passed() {
+    return passed;
+  }
+
+  /**
+   * @return how many elements failed at least one statement
+   */
+  public long failed() {
+    return count - passed;
+  }
+
+  /**
+   * @return how many statements were checked
+   */
+  public int statements() {
+    return failed.length;
+  }
+
+  /**
+   * @param statement the index of the statement, in the order they were defined
+   * @return how many elements failed the given statement
+   */
+  public long failed(int statement) {
+    return failed[statement];
+  }
+
+  /**
+   * @param statement the index of the statement, in the order they were defined
+   * @return the first failures of the given statement
+   */
+  public List<Failure> failures(int statement) {
+    return Collections.unmodifiableList(failures.get(statement));
+  }
+
+  /**
+   * Reports the failures, if any.
+   *
+   * @throws SpectacularException if any element failed any statement
+   */
+  public void verify() {
+    if (passed == count) {
+      return;
+    }
+    List<Failure> reported = new ArrayList<>();
+    failures.forEach(reported::addAll);
+    throw new SpectacularException(toString(), reported);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder summary = new StringBuilder(
+        String.format("%s (%d of %d elements failed)", scenario, count - passed, count));
+    for (int i = 0; i < failed.length; i++) {
+      if (failed[i] > 0) {
+        summary.append(System.lineSeparator())
+            .append(String.format("  - statement %d failed for %d elements", i + 1, failed[i]));
+        for (Failure failure : failures.get(i)) {
+          summary.append(System.lineSeparator()).append("    - ").append(failure);
+        }
+      }
+    }
+    return summary.toString();
+  }
+
+}
@@ -0,0 +1,634 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Records the results of the statements checked against a target object, or
+ * replays them instead of running the operations again.
+ * <p>
+ * Statements that produce a result or an outcome go through the tape of the
+ * current thread, if any. While recording, the tape writes the results and
+ * the exceptions thrown by the operations and actions. While replaying, the
+ * tape returns the recorded results without running anything, so the target
+ * object is not needed. Statements that measure the target, like measures and
+ * workloads, can't be replayed and are skipped.
+ * <p>
+ * A trace starts with a header identifying the spec, followed by a frame for
+ * each target object: its length as a varint and the tagged results of its
+ * statements, in the order they were checked. Only primitives, strings and
+ * byte arrays are recorded, so replaying a trace never creates objects of
+ * other types.
+ */
+final class Tape {
+
+  private static final int MAGIC = 0x53505452;
+  private static final byte VERSION = 1;
+  private static final int CHANNEL_BUFFER = 64 * 1024;
+  private static final int BATCH = 256;
+
+  private static final byte NULL = 0;
+  private static final byte FALSE = 1;
+  private static final byte TRUE = 2;
+  private static final byte INT = 3;
+  private static final byte LONG = 4;
+  private static final byte DOUBLE = 5;
+  private static final byte STRING = 6;
+  private static final byte BYTES = 7;
+  private static final byte THROWN = 8;
+  private static final byte FLOAT = 9;
+  private static final byte SHORT = 10;
+  private static final byte BYTE = 11;
+  private static final byte CHAR = 12;
+
+  private static final ThreadLocal<Tape> CURRENT = new ThreadLocal<>();
+  private static final AtomicInteger ACTIVE = new AtomicInteger();
+
+  private final boolean replaying;
+  private ByteBuffer buffer;
+
+  private Tape(boolean replaying, ByteBuffer buffer) {
+    this.replaying = replaying;
+    this.buffer = buffer;
+  }
+
+  /**
+   * @return the tape of the current thread, or {@code null} if there is none
+   */
+  static Tape current() {
+    return ACTIVE.get() == 0 ? null : CURRENT.get();
+  }
+
+  /**
+   * @return {@code true} if the current thread is replaying a trace
+   */
+  static boolean replaying() {
+    Tape tape = current();
+    return tape != null && tape.replaying;
+  }
+
+  /**
+   * Makes the given tape the one of the current thread, so statements that run
+   * in other threads use the tape of the thread that runs the spec.
+   *
+   * @param tape the tape, or {@code null} to remove the current one
+   * @return the previous tape of the current thread
+   */
+  static Tape attach(Tape tape) {
+    Tape previous = CURRENT.get();
+    if (tape == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(tape);
+    }
+    return previous;
+  }
+
+  /**
+   * Tests if the given exception, which may have been replayed, is an instance
+   * of the given type. Replayed exceptions are matched by the names of the
+   * classes recorded with them, so their classes are never loaded.
+   */
+  static boolean isInstance(Class<? extends Throwable> type, Throwable throwable) {
+    if (throwable instanceof Replayed) {
+      return ((Replayed) throwable).types.contains(type.getName());
+    }
+    return type.isInstance(throwable);
+  }
+
+  <T, R> R execute(Operation<? super T, R> operation, T target) throws Throwable {
+    if (replaying) {
+      @SuppressWarnings("unchecked")
+      R result = (R) read();
+      return result;
+    }
+    R result;
+    try {
+      result = operation.execute(target);
+    } catch (Throwable e) {
+      thrown(e);
+      throw e;
+    }
+    try {
+      write(result);
+    } catch (IOException e) {
+      thrown(e);
+      throw e;
+    }
+    return result;
+  }
+
+  <T> int executeInt(IntOperation<? super T> operation, T target) throws Throwable {
+    if (replaying) {
+      return ((Number) read()).intValue();
+    }
+    int result;
+    try {
+      result = operation.execute(target);
+    } catch (Throwable e) {
+      thrown(e);
+      throw e;
+    }
+    tag(INT);
+    varint(Integer.toUnsignedLong(result << 1 ^ result >> 31));
+    return result;
+  }
+
+  <T> long executeLong(LongOperation<? super T> operation, T target) throws Throwable {
+    if (replaying) {
+      return ((Number) read()).longValue();
+    }
+    long result;
+    try {
+      result = operation.execute(target);
+    } catch (Throwable e) {
+      thrown(e);
+      throw e;
+    }
+    tag(LONG);
+    varint(result << 1 ^ result >> 63);
+    return result;
+  }
+
+  <T> double executeDouble(DoubleOperation<? super T> operation, T target) throws Throwable {
+    if (replaying) {
+      return ((Number) read()).doubleValue();
+    }
+    double result;
+    try {
+      result = operation.execute(target);
+    } catch (Throwable e) {
+      thrown(e);
+      throw e;
+    }
+    tag(DOUBLE);
+    buffer.putDouble(result);
+    return result;
+  }
+
+  /**
+   * Runs the given action, or replays its outcome.
+   *
+   * @return the exception thrown by the action, or {@code null} if it didn't throw any
+   */
+  Throwable run(Action action) throws IOException {
+    if (replaying) {
+      try {
+        read();
+        return null;
+      } catch (Replayed e) {
+        return e;
+      } catch (Throwable e) {
+        throw new IOException("Invalid trace", e);
+      }
+    }
+    try {
+      action.run();
+    } catch (Throwable e) {
+      thrown(e);
+      return e;
+    }
+    tag(NULL);
+    return null;
+  }
+
+  private void thrown(Throwable throwable) {
+    List<String> types = new ArrayList<>();
+    for (Class<?> type = throwable.getClass(); type != Throwable.class; type = type.getSuperclass()) {
+      types.add(type.getName());
+    }
+    tag(THROWN);
+    varint(types.size());
+    types.forEach(this::string);
+    string(throwable.getMessage() == null ? "" : throwable.getMessage());
+  }
+
+  private void write(Object value) throws IOException {
+    if (value == null) {
+      tag(NULL);
+    } else if (value instanceof Boolean) {
+      tag((Boolean) value ? TRUE : FALSE);
+    } else if (value instanceof Integer) {
+      int v = (Integer) value;
+      tag(INT);
+      varint(Integer.toUnsignedLong(v << 1 ^ v >> 31));
+    } else if (value instanceof Long) {
+      long v = (Long) value;
+      tag(LONG);
+      varint(v << 1 ^ v >> 63);
+    } else if (value instanceof Double) {
+      tag(DOUBLE);
+      buffer.putDouble((Double) value);
+    } else if (value instanceof Float) {
+      tag(FLOAT);
+      buffer.putFloat((Float) value);
+    } else if (value instanceof Short) {
+      tag(SHORT);
+      buffer.putShort((Short) value);
+    } else if (value instanceof Byte) {
+      tag(BYTE);
+      buffer.put((Byte) value);
+    } else if (value instanceof Character) {
+      tag(CHAR);
+      buffer.putChar((Character) value);
+    } else if (value instanceof String) {
+      tag(STRING);
+      string((String) value);
+    } else if (value instanceof byte[]) {
+      tag(BYTES);
+      bytes((byte[]) value);
+    } else {
+      throw new IOException("Can't record a result of type " + value.getClass().getName()
+          + " (only primitives, strings and byte arrays are recorded)");
+    }
+  }
+
+  private Object read() throws Throwable {
+    if (!buffer.hasRemaining()) {
+      throw new IOException("The trace has no more results for this target object");
+    }
+    byte tag = buffer.get();
+    switch (tag) {
+      case NULL:
+        return null;
+      case FALSE:
+        return false;
+      case TRUE:
+        return true;
+      case INT:
+        long i = readVarint(buffer);
+        return (int) (i >>> 1) ^ -(int) (i & 1);
+      case LONG:
+        long l = readVarint(buffer);
+        return (l >>> 1) ^ -(l & 1);
+      case DOUBLE:
+        return buffer.getDouble();
+      case STRING:
+        return new String(readBytes(), StandardCharsets.UTF_8);
+      case BYTES:
+        return readBytes();
+      case FLOAT:
+        return buffer.getFloat();
+      case SHORT:
+        return buffer.getShort();
+      case BYTE:
+        return buffer.get();
+      case CHAR:
+        return buffer.getChar();
+      case THROWN:
+        int count = (int) readVarint(buffer);
+        List<String> types = new ArrayList<>(count);
+        for (int t = 0; t < count; t++) {
+          types.add(new String(readBytes(), StandardCharsets.UTF_8));
+        }
+        String message = new String(readBytes(), StandardCharsets.UTF_8);
+        if (types.isEmpty()) {
+          throw new IOException("Invalid trace: a thrown exception has no type");
+        }
+        throw new Replayed(types, message.isEmpty() ? null : message);
+      default:
+        throw new IOException("Invalid trace tag: " + tag);
+    }
+  }
+
+  private byte[] readBytes() {
+    byte[] bytes = new byte[(int) readVarint(buffer)];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  private void tag(byte tag) {
+    ensure(1 + Double.BYTES + 10);
+    buffer.put(tag);
+  }
+
+  private void string(String value) {
+    bytes(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void bytes(byte[] bytes) {
+    varint(bytes.length);
+    ensure(bytes.length);
+    buffer.put(bytes);
+  }
+
+  private void varint(long value) {
+    ensure(10);
+    writeVarint(buffer, value);
+  }
+
+  private void ensure(int bytes) {
+    if (buffer.remaining() < bytes) {
+      ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+      buffer.flip();
+      larger.put(buffer);
+      buffer = larger;
+    }
+  }
+
+  private static void writeVarint(ByteBuffer buffer, long value) {
+    while ((value & ~0x7FL) != 0) {
+      buffer.put((byte) (value & 0x7F | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  private static long readVarint(ByteBuffer buffer) {
+    long value = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+  }
+
+  private static ByteBuffer header(String scenario, int statements) {
+    byte[] name = scenario.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + 1 + 20 + name.length);
+    header.putInt(MAGIC).put(VERSION);
+    writeVarint(header, statements);
+    writeVarint(header, name.length);
+    header.put(name);
+    return header.flip();
+  }
+
+  /**
+   * Creates a Writer that records a trace to the given file.
+   *
+   * @param file       the trace file, which is replaced if it exists
+   * @param scenario   the scenario of the spec
+   * @param statements how many statements the spec has
+   * @return a new Writer
+   */
+  static Writer writer(Path file, String scenario, int statements) throws IOException {
+    return new Writer(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING), header(scenario, statements));
+  }
+
+  /**
+   * Creates a Reader that replays the trace in the given file.
+   *
+   * @param file       the trace file
+   * @param scenario   the scenario of the spec
+   * @param statements how many statements the spec has
+   * @return a new Reader
+   * @throws IOException if the trace was not recorded by the same spec
+   */
+  static Reader reader(Path file, String scenario, int statements) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      Reader reader = new Reader(channel);
+      reader.check(header(scenario, statements));
+      return reader;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Writes the frames of a trace, buffering them so the channel receives large
+   * writes. Frames are recorded by concurrent threads, each with a tape of its
+   * own, and written one at a time.
+   */
+  static final class Writer implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer output = ByteBuffer.allocateDirect(CHANNEL_BUFFER);
+    private final ThreadLocal<Tape> tapes = ThreadLocal.withInitial(() -> new Tape(false, ByteBuffer.allocate(256)));
+
+    private Writer(FileChannel channel, ByteBuffer header) throws IOException {
+      this.channel = channel;
+      ACTIVE.incrementAndGet();
+      output.put(header);
+    }
+
+    /**
+     * Runs the given evaluation of a target object, recording the results of
+     * its statements as a frame.
+     *
+     * @param evaluation the evaluation to record
+     */
+    void record(Runnable evaluation) {
+      Tape tape = tapes.get();
+      tape.buffer.clear();
+      Tape previous = attach(tape);
+      try {
+        evaluation.run();
+      } finally {
+        attach(previous);
+      }
+      try {
+        write(tape.buffer.flip());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private synchronized void write(ByteBuffer frame) throws IOException {
+      if (output.remaining() < 10 + frame.remaining()) {
+        flush();
+      }
+      writeVarint(output, frame.remaining());
+      if (output.remaining() < frame.remaining()) {
+        flush();
+        while (frame.hasRemaining()) {
+          channel.write(frame);
+        }
+      } else {
+        output.put(frame);
+      }
+    }
+
+    private void flush() throws IOException {
+      output.flip();
+      while (output.hasRemaining()) {
+        channel.write(output);
+      }
+      output.clear();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      try {
+        flush();
+      } finally {
+        ACTIVE.decrementAndGet();
+        channel.close();
+      }
+    }
+
+  }
+
+  /**
+   * Reads the frames of a trace. The frames are read sequentially, and handed
+   * in batches to the threads that replay them, so only a few batches are in
+   * memory at a time.
+   */
+  static final class Reader extends Spliterators.AbstractSpliterator<ByteBuffer> implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer input = ByteBuffer.allocateDirect(CHANNEL_BUFFER);
+
+    private Reader(FileChannel channel) {
+      super(Long.MAX_VALUE, Spliterator.NONNULL);
+      this.channel = channel;
+      input.flip();
+      ACTIVE.incrementAndGet();
+    }
+
+    private void check(ByteBuffer header) throws IOException {
+      fill(header.remaining());
+      ByteBuffer actual = input.slice().limit(Math.min(input.remaining(), header.remaining()));
+      if (!actual.equals(header)) {
+        throw new IOException("The trace was not recorded by this spec");
+      }
+      input.position(input.position() + header.remaining());
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super ByteBuffer> action) {
+      try {
+        if (!fill(1)) {
+          return false;
+        }
+        fill(10);
+        int length = (int) readVarint(input);
+        ByteBuffer frame = ByteBuffer.allocate(length);
+        while (frame.hasRemaining()) {
+          if (!fill(1)) {
+            throw new IOException("The trace ends in the middle of a frame");
+          }
+          ByteBuffer chunk = input.slice().limit(Math.min(input.remaining(), frame.remaining()));
+          frame.put(chunk);
+          input.position(input.position() + chunk.limit());
+        }
+        action.accept(frame.flip());
+        return true;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public Spliterator<ByteBuffer> trySplit() {
+      ByteBuffer[] batch = new ByteBuffer[BATCH];
+      int size = 0;
+      while (size < BATCH) {
+        int index = size;
+        if (!tryAdvance(frame -> batch[index] = frame)) {
+          break;
+        }
+        size++;
+      }
+      return size == 0 ? null : Spliterators.spliterator(batch, 0, size, Spliterator.NONNULL);
+    }
+
+    /**
+     * Reads from the channel until the given number of bytes is available or
+     * the trace ends.
+     *
+     * @return {@code true} if at least one byte is available
+     */
+    private boolean fill(int bytes) throws IOException {
+      if (input.remaining() < bytes) {
+        input.compact();
+        int read = 0;
+        while (input.position() < bytes && read >= 0) {
+          read = channel.read(input);
+        }
+        input.flip();
+      }
+      return input.hasRemaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+      ACTIVE.decrementAndGet();
+      channel.close();
+    }
+
+  }
+
+  /**
+   * Replays the given frame, running the given evaluation with a tape that
+   * returns the recorded results.
+   *
+   * @param frame      the frame to replay
+   * @param evaluation the evaluation of the target object
+   */
+  static void replay(ByteBuffer frame, Runnable evaluation) {
+    Tape previous = attach(new Tape(true, frame));
+    try {
+      evaluation.run();
+    } finally {
+      attach(previous);
+    }
+  }
+
+  /**
+   * An exception thrown while recording, replayed without its stack trace.
+   */
+  static final class Replayed extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The names of the class of the recorded exception and of its superclasses
+     * below {@link Throwable}.
+     */
+    private final List<String> types;
+
+    private Replayed(List<String> types, String message) {
+      super(message, null, false, false);
+      this.types = types;
+    }
+
+    @Override
+    public String toString() {
+      String message = getMessage();
+      return message == null ? types.get(0) : types.get(0) + ": " + message;
+    }
+
+  }
+
+}
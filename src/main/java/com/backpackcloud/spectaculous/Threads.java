@@ -0,0 +1,94 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Helper for creating the threads used to drive statements.
+ */
+final class Threads {
+
+  private static final MethodHandle VIRTUAL_FACTORY = lookupVirtualFactory();
+
+  private Threads() {
+
+  }
+
+  /**
+   * Creates a factory for threads with the given name prefix.
+   *
+   * @param name    the prefix of the thread names
+   * @param virtual if virtual threads should be used when the runtime supports them
+   * @return a ThreadFactory
+   */
+  static ThreadFactory factory(String name, boolean virtual) {
+    if (virtual && VIRTUAL_FACTORY != null) {
+      try {
+        return (ThreadFactory) VIRTUAL_FACTORY.invoke(name);
+      } catch (Throwable e) {
+        // falls back to platform threads
+      }
+    }
+    AtomicInteger counter = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, name + counter.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * @return {@code true} if the runtime supports virtual threads
+   */
+  static boolean virtualThreadsSupported() {
+    return VIRTUAL_FACTORY != null;
+  }
+
+  private static MethodHandle lookupVirtualFactory() {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      Class<?> builder = Class.forName("java.lang.Thread$Builder");
+      Class<?> ofVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+      MethodHandle create = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(ofVirtual));
+      MethodHandle name = lookup.findVirtual(ofVirtual, "name",
+          MethodType.methodType(ofVirtual, String.class, long.class));
+      MethodHandle factory = lookup.findVirtual(builder, "factory", MethodType.methodType(ThreadFactory.class));
+      // checks that virtual threads are not a disabled preview feature
+      create.invoke();
+      // (String prefix) -> Thread.ofVirtual().name(prefix, 0).factory()
+      MethodHandle named = MethodHandles.insertArguments(MethodHandles.collectArguments(name, 0, create), 1, 0L);
+      return MethodHandles.filterReturnValue(
+          named.asType(MethodType.methodType(builder, String.class)), factory);
+    } catch (Throwable e) {
+      return null;
+    }
+  }
+
+}
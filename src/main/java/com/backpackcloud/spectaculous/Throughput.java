@@ -0,0 +1,236 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 Marcelo Guimarães <ataxexe@backpackcloud.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.backpackcloud.spectaculous;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A workload that drives an action from a number of concurrent callers for a
+ * fixed duration and checks the sustained throughput against a floor.
+ * <p>
+ * Each caller counts its own completions and publishes them only once the run
+ * is over, so callers never contend on a shared counter and the harness doesn't
+ * become the bottleneck. The completions of each caller are quoted in the report
+ * to reveal contention inside the target.
+ */
+public final class Throughput implements Workload {
+
+  private static final int WARMUP = 0;
+  private static final int MEASURE = 1;
+  private static final int STOP = 2;
+
+  private final double floor;
+  private final int threads;
+  private final boolean virtual;
+  private final Duration duration;
+  private final Duration warmup;
+
+  private Throughput(double floor, int threads, boolean virtual, Duration duration, Duration warmup) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Invalid thread count: " + threads);
+    }
+    if (duration.isNegative() || duration.isZero() || warmup.isNegative()) {
+      throw new IllegalArgumentException("Invalid duration");
+    }
+    this.floor = floor;
+    this.threads = threads;
+    this.virtual = virtual;
+    this.duration = duration;
+    this.warmup = warmup;
+  }
+
+  /**
+   * Sets how many concurrent callers drive the action. Defaults to the number
+   * of available processors.
+   *
+   * @param threads the number of callers
+   * @return a new Throughput that uses the given number of callers
+   */
+  public Throughput threads(int threads) {
+    return new Throughput(floor, threads, virtual, duration, warmup);
+  }
+
+  /**
+   * Uses virtual threads for the callers if the runtime supports them.
+   *
+   * @return a new Throughput that uses virtual threads
+   */
+  public Throughput virtualThreads() {
+    return new Throughput(floor, threads, true, duration, warmup);
+  }
+
+  /**
+   * Sets for how long the throughput is measured. Defaults to 1 second.
+   *
+   * @param duration the measurement duration
+   * @return a new Throughput that uses the given duration
+   */
+  public Throughput during(Duration duration) {
+    return new Throughput(floor, threads, virtual, duration, warmup);
+  }
+
+  /**
+   * Sets for how long the callers run before being measured. Defaults to 200 milliseconds.
+   *
+   * @param warmup the warmup duration
+   * @return a new Throughput that uses the given warmup
+   */
+  public Throughput warmup(Duration warmup) {
+    return new Throughput(floor, threads, virtual, duration, warmup);
+  }
+
+  @Override
+  public <T> Measure.Result drive(T target, TargetedAction<? super T> action) throws Throwable {
+    long[] completions = new long[threads];
+    Thread[] callers = new Thread[threads];
+    CountDownLatch ready = new CountDownLatch(threads);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Phase control = new Phase();
+    ThreadFactory factory = Threads.factory("spectaculous-throughput-", virtual);
+
+    for (int i = 0; i < threads; i++) {
+      int index = i;
+      callers[i] = factory.newThread(() -> {
+        long count = 0;
+        ready.countDown();
+        try {
+          while (control.value == WARMUP) {
+            action.run(target);
+          }
+          while (control.value == MEASURE) {
+            action.run(target);
+            count++;
+          }
+        } catch (Throwable e) {
+          failure.compareAndSet(null, e);
+          control.value = STOP;
+        }
+        completions[index] = count;
+      });
+      callers[i].start();
+    }
+
+    long elapsed;
+    try {
+      ready.await();
+      TimeUnit.NANOSECONDS.sleep(warmup.toNanos());
+      long start = System.nanoTime();
+      control.value = MEASURE;
+      TimeUnit.NANOSECONDS.sleep(duration.toNanos());
+      control.value = STOP;
+      elapsed = System.nanoTime() - start;
+    } finally {
+      // stops the callers even if the driving thread is interrupted, like by a timeout
+      control.value = STOP;
+      for (Thread caller : callers) {
+        caller.join();
+      }
+    }
+
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+
+    long total = Arrays.stream(completions).sum();
+    double rate = total / (elapsed / 1e9);
+    return Measure.Result.of(rate >= floor, String.format(Locale.ROOT,
+        "%.0f ops/s from %d %s threads, floor %.0f ops/s, per thread %s",
+        rate, threads, virtual && Threads.virtualThreadsSupported() ? "virtual" : "platform", floor,
+        distribution(completions)));
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT, "at least %.0f ops/s", floor);
+  }
+
+  private static String distribution(long[] completions) {
+    long[] sorted = completions.clone();
+    Arrays.sort(sorted);
+    String summary = String.format(Locale.ROOT, "min=%d, median=%d, max=%d",
+        sorted[0], sorted[sorted.length / 2], sorted[sorted.length - 1]);
+    return completions.length > 16 ? summary : summary + " " + Arrays.toString(completions);
+  }
+
+  /**
+   * Starts the definition of a Throughput that requires at least the given
+   * number of operations.
+   *
+   * @param operations the minimum number of operations
+   * @return a component for defining the time unit
+   */
+  public static Floor atLeast(long operations) {
+    return new Floor(operations);
+  }
+
+  /**
+   * Component for defining the time unit of a throughput floor.
+   */
+  public static final class Floor {
+
+    private final long operations;
+
+    private Floor(long operations) {
+      this.operations = operations;
+    }
+
+    /**
+     * @return a Throughput that requires the operations to be done every second
+     */
+    public Throughput opsPerSecond() {
+      return per(Duration.ofSeconds(1));
+    }
+
+    /**
+     * @return a Throughput that requires the operations to be done every millisecond
+     */
+    public Throughput opsPerMillisecond() {
+      return per(Duration.ofMillis(1));
+    }
+
+    /**
+     * @param period the period
+     * @return a Throughput that requires the operations to be done every given period
+     */
+    public Throughput per(Duration period) {
+      return new Throughput(operations * 1e9 / period.toNanos(), Runtime.getRuntime().availableProcessors(),
+          false, Duration.ofSeconds(1), Duration.ofMillis(200));
+    }
+
+  }
+
+  private static final class Phase {
+
+    volatile int value = WARMUP;
+
+  }
+
+}
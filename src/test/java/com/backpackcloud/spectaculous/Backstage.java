@@ -28,15 +28,42 @@ import org.hamcrest.Matcher;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -258,6 +285,926 @@ public class Backstage {
     }
   }
 
+  @Test
+  public void testGivenOnce() throws Throwable {
+    AutoCloseable closeable = mock(AutoCloseable.class);
+
+    Spec.describe("test")
+        .givenOnce(supplier)
+        .expect(result).from(operation)
+        .then(targetedAction).willSucceed()
+        .waitFor(targetedAction)
+        .givenShared(supplier)
+        .expect(result).from(operation)
+        .expect(result).from(operation);
+
+    verify(supplier, times(2)).get();
+    verify(operation, times(3)).execute(value);
+    verify(targetedAction, times(2)).run(value);
+
+    Spectacle.Releasable<Object> spec = Spec.describe("test").givenOnce(() -> closeable);
+    spec.then(targetedAction).willSucceed()
+        .given(value)
+        .then(targetedAction).willSucceed();
+    verify(closeable).close();
+
+    spec.then(targetedAction).willSucceed();
+    spec.release();
+    verify(closeable, times(2)).close();
+
+    CompletableFuture<Object> future = new CompletableFuture<>();
+    Spectacle<Object> shared = Spec.describe("test")
+        .givenShared(() -> closeable)
+        .thenAsync(o -> future).willComplete()
+        .given(value);
+    verify(closeable, times(2)).close();
+    future.complete(value);
+    shared.verify();
+    verify(closeable, times(3)).close();
+  }
+
+  @Test
+  public void testPlan() throws Throwable {
+    List<String> steps = Collections.synchronizedList(new ArrayList<>());
+
+    Spectacle<Object> plan = Spec.plan("test")
+        .given(supplier)
+        .then(o -> steps.add("a1")).willSucceed()
+        .expect(result).from(operation)
+        .then(o -> steps.add("a2")).willSucceed()
+        .given(value)
+        .then(o -> steps.add("b1")).willSucceed()
+        .expect(result).from(operation);
+
+    verify(supplier, times(0)).get();
+    verify(operation, times(0)).execute(value);
+
+    plan.verify();
+
+    verify(supplier, times(3)).get();
+    verify(operation, times(2)).execute(value);
+    assertTrue(steps.indexOf("a1") < steps.indexOf("a2"));
+    assertEquals(3, steps.size());
+
+    SpectacularException e = assertThrows(SpectacularException.class, () -> {
+      Spec.plan("test")
+          .given(value)
+          .because("It's going to fail")
+          .then(throwException()).willSucceed()
+          .then(action).willSucceed()
+          .given(value)
+          .expect(value).from(operation)
+          .given(value)
+          .then(action).willSucceed()
+          .verify();
+    });
+    assertEquals(2, e.getSuppressed().length);
+    assertTrue(e.getMessage().startsWith("test (2 of 3 segments failed)"));
+    verify(action).run();
+  }
+
+  @Test
+  public void testSoftly() throws Throwable {
+    Spectacle<Object> spec = Spec.softly("test")
+        .given(supplier)
+        .expect(result).from(operation)
+        .because("It's going to fail")
+        .expect(value).from(operation)
+        .then(throwException()).willSucceed()
+        .because("It's fine")
+        .then(action).willSucceed();
+
+    verify(action).run();
+
+    SpectacularException e = assertThrows(SpectacularException.class, spec::verify);
+    assertEquals(2, e.failures().size());
+    assertTrue(e.getMessage().startsWith("test (2 statements failed)"));
+
+    Failure failure = e.failures().get(0);
+    assertEquals("test", failure.scenario());
+    assertEquals("It's going to fail", failure.reason());
+    assertEquals(String.valueOf(value), failure.expected());
+    assertSame(result, failure.actual());
+    assertEquals(Exception.class, e.failures().get(1).cause().getClass());
+
+    spec.verify();
+  }
+
+  @Test
+  public void testCompile() throws Throwable {
+    CompiledSpec<Object> compiled = Spec.compile("test", spec -> spec
+        .expect(predicate).from(operation)
+        .because("It should run")
+        .then(targetedAction).willSucceed());
+
+    assertEquals(2, compiled.size());
+    verify(operation, times(0)).execute(value);
+
+    compiled.evaluate(value);
+    assertTrue(compiled.test(value));
+
+    verify(operation, times(2)).execute(value);
+    verify(targetedAction, times(2)).run(value);
+
+    SpectacularException e = assertThrows(SpectacularException.class, () -> compiled.evaluate(result));
+    assertEquals("test", e.getMessage());
+    assertFalse(compiled.test(result));
+
+    assertThrows(IllegalStateException.class, () -> Spec.compile("test", spec -> spec.given(value)));
+  }
+
+  @Test
+  public void testForEach() {
+    CompiledSpec<Integer> compiled = Spec.<Integer>compile("test", spec -> spec
+        .because("It should be positive")
+        .expect(true).from(i -> i > 0)
+        .because("It should be even")
+        .expect(0).from(i -> i % 2))
+        .samples(2);
+
+    Summary summary = compiled.forEach(IntStream.rangeClosed(1, 10_000).boxed().parallel());
+    assertEquals(10_000, summary.count());
+    assertEquals(5_000, summary.passed());
+    assertEquals(5_000, summary.failed());
+    assertEquals(0, summary.failed(0));
+    assertEquals(5_000, summary.failed(1));
+    assertTrue(summary.failures(0).isEmpty());
+    assertEquals(2, summary.failures(1).size());
+
+    SpectacularException e = assertThrows(SpectacularException.class, summary::verify);
+    assertTrue(e.getMessage().startsWith("test (5000 of 10000 elements failed)"));
+    assertTrue(e.getMessage().contains("statement 2 failed for 5000 elements"));
+    assertTrue(e.getMessage().contains("test: It should be even (expected: 0, actual: 1)"));
+    assertEquals(2, e.failures().size());
+
+    compiled.forEach(Arrays.asList(2, 4, 6)).verify();
+    assertEquals(1, compiled.forEach(Arrays.asList(-2, 4).spliterator()).failed());
+  }
+
+  @Test
+  public void testRecordReplay() throws Throwable {
+    Path trace = Files.createTempDirectory("spectaculous").resolve("trace.bin");
+    AtomicInteger calls = new AtomicInteger();
+    Function<Integer, CompiledSpec<Integer>> compile = remainder -> Spec.<Integer>compile("test", spec -> spec
+        .expect(remainder).from(i -> {
+          calls.incrementAndGet();
+          return i % 2;
+        })
+        .expect("#7").from(i -> "#" + i % 10)
+        .then(i -> {
+          calls.incrementAndGet();
+          if (i % 3 == 0) {
+            throw new IllegalStateException("three");
+          }
+        }).willSucceed());
+    CompiledSpec<Integer> compiled = compile.apply(0);
+
+    Summary recorded = compiled.record(IntStream.rangeClosed(1, 1000).boxed().parallel(), trace);
+    assertEquals(1000, recorded.count());
+    assertEquals(500, recorded.failed(0));
+    assertEquals(900, recorded.failed(1));
+    assertEquals(333, recorded.failed(2));
+    assertEquals(2000, calls.get());
+
+    Summary replayed = compiled.replay(trace);
+    assertEquals(2000, calls.get());
+    assertEquals(1000, replayed.count());
+    assertEquals(recorded.passed(), replayed.passed());
+    assertEquals(500, replayed.failed(0));
+    assertEquals(900, replayed.failed(1));
+    assertEquals(333, replayed.failed(2));
+    assertEquals("java.lang.IllegalStateException: three", replayed.failures(2).get(0).cause().toString());
+
+    Summary changed = compile.apply(1).replay(trace);
+    assertEquals(2000, calls.get());
+    assertEquals(500, changed.failed(0));
+    assertEquals("1", changed.failures(0).get(0).expected());
+
+    Summary thrown = Spec.<Integer>compile("test", spec -> spec
+        .expect(0).from(i -> i % 2)
+        .expect(String.class::isInstance).from(i -> i)
+        .then(() -> {throw new IllegalStateException();}).willThrow(RuntimeException.class))
+        .replay(trace);
+    assertEquals(0, thrown.failed(1));
+    assertEquals(667, thrown.failed(2));
+
+    Path custom = trace.resolveSibling("custom.bin");
+    Summary rejected = Spec.<Integer>compile("custom", spec -> spec
+        .then(i -> {throw new Rejected();}).willThrow(RuntimeException.class)
+        .then(i -> {throw new Rejected();}).willThrow(Rejected.class)
+        .then(i -> {throw new Rejected();}).willThrow(IllegalArgumentException.class)
+        .expect(Objects::nonNull).from(Collections::singletonList))
+        .record(Stream.of(1, 2), custom);
+    assertEquals(0, rejected.failed(0));
+    assertEquals(0, rejected.failed(1));
+    assertEquals(2, rejected.failed(2));
+    assertEquals(2, rejected.failed(3));
+    assertTrue(rejected.failures(3).get(0).cause() instanceof IOException);
+    Summary replayedRejected = Spec.<Integer>compile("custom", spec -> spec
+        .then(i -> {throw new Rejected();}).willThrow(RuntimeException.class)
+        .then(i -> {throw new Rejected();}).willThrow(Rejected.class)
+        .then(i -> {throw new Rejected();}).willThrow(IllegalArgumentException.class)
+        .expect(Objects::nonNull).from(Collections::singletonList))
+        .replay(custom);
+    assertEquals(0, replayedRejected.failed(0));
+    assertEquals(0, replayedRejected.failed(1));
+    assertEquals(2, replayedRejected.failed(2));
+    assertEquals(2, replayedRejected.failed(3));
+    assertThrows(IOException.class, () -> Spec.<Integer>compile("other", spec -> spec
+        .expect(0).from(i -> i % 2))
+        .replay(trace));
+  }
+
+  @Test
+  public void testPrimitiveExpect() {
+    Spec.describe(String.class)
+        .given("spectaculous")
+        .expectInt(12).from(String::length)
+        .expectLong(12L).from(s -> (long) s.length())
+        .expectDouble(0.5).from(s -> s.length() / 24.0)
+        .expectClose(0.33, 0.01).from(s -> s.length() / 36.0)
+        .expectInt(i -> i > 0).from(String::length)
+        .expectLong(l -> l < 0).from(s -> -1L)
+        .expectDouble(Double::isNaN).from(s -> Double.NaN)
+        .expectDouble(Double.NaN).from(s -> 0.0 / 0.0);
+
+    Operation<String, Integer> length = String::length;
+    Spec.describe(String.class)
+        .given("spectaculous")
+        .expect(12).from(length)
+        .expect('s').from(s -> s.charAt(0));
+
+    SpectacularException e = assertThrows(SpectacularException.class, () -> Spec.describe("test")
+        .given(value)
+        .expectInt(0).from(o -> 12));
+    assertEquals("test (expected: 0, actual: 12)", e.failures().get(0).toString());
+    assertEquals(12, e.failures().get(0).actual());
+
+    e = assertThrows(SpectacularException.class, () -> Spec.describe("test")
+        .given(value)
+        .expectClose(1, 0.1).from(o -> 1.5));
+    assertEquals("test (expected: 1.0 +/- 0.1, actual: 1.5)", e.failures().get(0).toString());
+
+    assertThrows(SpectacularException.class, () -> Spec.describe("test")
+        .given(value)
+        .expect(0).from(o -> null));
+    assertThrows(SpectacularException.class, () -> Spec.describe("test")
+        .given(value)
+        .expectDouble(0.0).from(o -> -0.0));
+    assertThrows(SpectacularException.class, () -> Spec.describe("test")
+        .given(value)
+        .expectClose(0, 1).from(o -> Double.NaN));
+    assertThrows(SpectacularException.class, () -> Spec.describe("test")
+        .given(value)
+        .expectLong(l -> l == 0).from(o -> 1L));
+    assertThrows(IllegalArgumentException.class, () -> Spec.describe("test").expectClose(0, -1));
+  }
+
+  @Test
+  public void testGen() {
+    AtomicInteger trials = new AtomicInteger();
+
+    Spec.describe(Integer.class)
+        .given(Gen.ints(-10, 10).trials(500))
+        .expect(true).from(i -> trials.incrementAndGet() > 0 && Math.abs(i) <= 10);
+
+    Spec.describe(String.class)
+        .given(Gen.longs(0, 5).mapToObj(l -> "x".repeat((int) l)))
+        .expect(true).from(s -> s.length() <= 5);
+
+    assertEquals(500, trials.get());
+
+    SpectacularException e = assertThrows(SpectacularException.class, () -> {
+      Spec.describe("test")
+          .given(Gen.ints(0, 1_000_000).seed(42))
+          .because("It should be small")
+          .expect(true).from(i -> (Integer) i < 100);
+    });
+    assertTrue(e.getMessage().startsWith("test: It should be small (counterexample: 100, seed=42, trial "));
+    assertTrue(e.getMessage().endsWith("; expected: true, actual: false)"));
+
+    e = assertThrows(SpectacularException.class, () -> {
+      Spec.describe(Long.class)
+          .given(Gen.longs())
+          .expect(true).from(l -> l > -1_000);
+    });
+    assertTrue(e.getMessage().contains("counterexample: -1000,"));
+
+    e = assertThrows(SpectacularException.class, () -> {
+      Spec.describe(Double.class)
+          .given(Gen.doubles(0, 100))
+          .then(d -> {
+            if (d >= 50) {
+              throw new IllegalStateException();
+            }
+          }).willSucceed();
+    });
+    assertTrue(e.getMessage().contains("counterexample: 50.0,"));
+    assertEquals(IllegalStateException.class, e.getCause().getClass());
+
+    IntGen primitive = new IntGen() {
+      @Override
+      public int generateInt(SplittableRandom random) {
+        return random.nextInt(1_000);
+      }
+
+      @Override
+      public IntStream shrinkInt(int value) {
+        return IntStream.of(value / 2);
+      }
+
+      @Override
+      public Integer generate(SplittableRandom random) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public Stream<Integer> shrink(Integer value) {
+        throw new UnsupportedOperationException();
+      }
+    };
+    e = assertThrows(SpectacularException.class, () -> {
+      Spec.describe(Integer.class)
+          .given(primitive.seed(7))
+          .expect(true).from(i -> i < 1);
+    });
+    assertTrue(e.getMessage().contains("counterexample: 1,"));
+  }
+
+  @Test
+  public void testAsync() {
+    CompletableFuture<String> future = new CompletableFuture<>();
+
+    Spectacle<Object> spec = Spec.describe("test")
+        .given(value)
+        .expect("done").fromAsync(o -> future)
+        .thenAsync(o -> future).willCompleteWith("done")
+        .thenAsync(o -> future.thenApply(String::length)).willComplete()
+        .thenAsync(o -> CompletableFuture.failedFuture(new IllegalStateException()))
+        .willCompleteExceptionally(IllegalStateException.class);
+
+    CompletableFuture<Void> verified = spec.verifyAsync();
+    assertFalse(verified.isDone());
+    future.complete("done");
+    verified.join();
+
+    SpectacularException e = assertThrows(SpectacularException.class, () -> {
+      Spec.softly("test")
+          .given(value)
+          .because("It should time out")
+          .thenAsync(o -> new CompletableFuture<>()).within(Duration.ofMillis(10)).willComplete()
+          .because("It should be done")
+          .thenAsync(o -> CompletableFuture.completedFuture("other")).willCompleteWith("done")
+          .because("It should fail")
+          .thenAsync(o -> CompletableFuture.completedFuture("other")).willCompleteExceptionally()
+          .verify();
+    });
+    assertEquals(3, e.failures().size());
+    assertTrue(e.getMessage().contains("test: It should time out (not completed within 10.0ms)"));
+    assertTrue(e.getMessage().contains("test: It should be done (expected: done, actual: other)"));
+    assertTrue(e.getMessage().contains("test: It should fail (completed with other)"));
+
+    e = assertThrows(SpectacularException.class, () -> Spec.describe("test")
+        .given(value)
+        .because("It should be done")
+        .thenAsync(o -> CompletableFuture.completedFuture("other")).willCompleteWith("done")
+        .because("It should be followed")
+        .expect(value).from(o -> o));
+    assertEquals("test: It should be done (expected: done, actual: other)", e.failures().get(0).toString());
+
+    assertThrows(IllegalStateException.class, () -> Spec.compile("test", spec1 -> spec1
+        .thenAsync(o -> future).willComplete()));
+  }
+
+  @Test
+  public void testLatencyExpect() throws Throwable {
+    Spec.describe("test")
+        .given(supplier)
+        .expect(Latency.within(Duration.ofSeconds(1)).warmup(5).iterations(10)).from(operation)
+        .expect(Latency.within(Duration.ofSeconds(1)).warmup(5).iterations(10)).from(action);
+
+    SpectacularException e = assertThrows(SpectacularException.class, () -> {
+      Spec.describe("test")
+          .because("It's too slow")
+          .expect(Latency.within(Duration.ofNanos(1)).warmup(0).iterations(3)).from(() -> Thread.sleep(1));
+    });
+    assertTrue(e.getMessage().startsWith("test: It's too slow (p50="));
+
+    assertThrows(SpectacularException.class, () -> {
+      Spec.describe("test")
+          .expect(Latency.within(Duration.ofSeconds(1))).from(throwException());
+    });
+
+    verify(supplier).get();
+    verify(operation, times(15)).execute(value);
+    verify(action, times(15)).run();
+  }
+
+  @Test
+  public void testThroughputExpect() throws Throwable {
+    Throughput throughput = Throughput.atLeast(1).opsPerSecond()
+        .threads(2)
+        .warmup(Duration.ofMillis(10))
+        .during(Duration.ofMillis(50));
+
+    Spec.describe("test")
+        .given(supplier)
+        .expectWorkload(throughput).from(targetedAction)
+        .expectWorkload(throughput.virtualThreads()).from(action);
+
+    SpectacularException e = assertThrows(SpectacularException.class, () -> {
+      Spec.describe("test")
+          .expectWorkload(Throughput.atLeast(1).opsPerMillisecond()
+              .threads(2)
+              .warmup(Duration.ZERO)
+              .during(Duration.ofMillis(50))).from(() -> Thread.sleep(10));
+    });
+    assertTrue(e.getMessage().contains("per thread"));
+
+    assertThrows(SpectacularException.class, () -> {
+      Spec.describe("test")
+          .given(value)
+          .expectWorkload(throughput).from(o -> {
+            throw new Exception();
+          });
+    });
+
+    AtomicLong calls = new AtomicLong();
+    assertThrows(SpectacularException.class, () -> Spec.describe("test")
+        .within(Duration.ofMillis(50))
+        .expectWorkload(throughput.during(Duration.ofSeconds(10))).from(() -> calls.incrementAndGet()));
+    Thread.sleep(100);
+    long stopped = calls.get();
+    Thread.sleep(100);
+    assertEquals(stopped, calls.get());
+
+    verify(supplier).get();
+  }
+
+  @Test
+  public void testLoadExpect() {
+    AtomicInteger calls = new AtomicInteger();
+    Load load = Load.constant(2_000).during(Duration.ofMillis(300)).warmup(Duration.ofMillis(50)).threads(2);
+    Spec.describe("test")
+        .given(value)
+        .expectWorkload(load.latency(Duration.ofSeconds(1))).from(o -> calls.incrementAndGet())
+        .expectWorkload(Load.ramp(100, 1_000).during(Duration.ofMillis(200)).warmup(Duration.ZERO)).from(() -> {
+        })
+        .expectWorkload(Load.steps(100, 500, Duration.ofMillis(100)).during(Duration.ofMillis(300))).from(() -> {
+        });
+    assertEquals(700, calls.get());
+
+    SpectacularException e = assertThrows(SpectacularException.class, () -> Spec.describe("test")
+        .given(value)
+        .expectWorkload(Load.constant(1_000).during(Duration.ofMillis(200)).threads(1).latency(Duration.ofMillis(5)))
+        .from(() -> Thread.sleep(2)));
+    assertTrue(e.getMessage().contains("at 1000/s from 1 platform threads, p99.9="));
+
+    AtomicInteger failures = new AtomicInteger();
+    e = assertThrows(SpectacularException.class, () -> Spec.describe("test")
+        .given(value)
+        .expectWorkload(load.errorRate(0.1)).from(() -> {
+          if (failures.incrementAndGet() % 5 == 0) {
+            throw new IllegalStateException("boom");
+          }
+        }));
+    assertTrue(e.getMessage().contains("budget 10.00%), first error: java.lang.IllegalStateException: boom"));
+
+    assertThrows(IllegalArgumentException.class, () -> Load.constant(0));
+  }
+
+  @Test
+  public void testAllocationExpect() throws Throwable {
+    Spec.describe("test")
+        .given(value)
+        .expect(Allocation.allocatesAtMost(0)).from(o -> o)
+        .expect(Allocation.allocatesAtMost(0).warmup(0).iterations(10)).from(() -> {
+        });
+
+    SpectacularException e = assertThrows(SpectacularException.class, () -> {
+      Spec.describe("test")
+          .given(value)
+          .because("It allocates too much")
+          .expect(Allocation.allocatesAtMost(512).warmup(10).iterations(100)).from(o -> new byte[1024]);
+    });
+    assertTrue(e.getMessage().startsWith("test: It allocates too much (allocated 1."));
+    assertTrue(e.getMessage().endsWith("KiB per call, budget 512 B per call)"));
+  }
+
+  @Test
+  public void testRegressionExpect() throws Throwable {
+    Path baseline = Files.createTempDirectory("spectaculous").resolve("baseline.csv");
+    Regression regression = Regression.latency().warmup(10).iterations(200).baseline(baseline);
+    AtomicLong delay = new AtomicLong();
+    Operation<Object, Object> spin = o -> {
+      long end = System.nanoTime() + delay.get();
+      while (System.nanoTime() < end) {
+        Thread.onSpinWait();
+      }
+      return o;
+    };
+
+    Spec.describe("test")
+        .given(value)
+        .because("It shouldn't \"regress\"")
+        .expect(regression).from(spin);
+    assertTrue(Files.readAllLines(baseline).get(1).startsWith("\"test: It shouldn't \"\"regress\"\" #1\","));
+
+    delay.set(50_000);
+    SpectacularException e = assertThrows(SpectacularException.class, () -> {
+      Spec.describe("test")
+          .given(value)
+          .because("It shouldn't \"regress\"")
+          .expect(regression).from(spin);
+    });
+    assertTrue(e.getMessage().contains("baseline median="));
+
+    Spec.describe("test")
+        .given(value)
+        .because("It has no baseline yet")
+        .expect(regression).from(spin)
+        .expect(regression).from(spin);
+    assertEquals(4, Files.readAllLines(baseline).size());
+
+    Histogram histogram = new Histogram();
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i);
+    }
+    assertEquals(0.5, Regression.pValue(histogram, histogram), 0.01);
+  }
+
+  @Test
+  public void testTimeout() throws Throwable {
+    Spec.describe("test")
+        .given(value)
+        .within(Duration.ofSeconds(5))
+        .expect(value).from(o -> o)
+        .then(() -> Thread.sleep(100)).willSucceed();
+
+    CountDownLatch interrupted = new CountDownLatch(1);
+    SpectacularException e = assertThrows(SpectacularException.class, () -> Spec.describe("test")
+        .within(Duration.ofMillis(50))
+        .waitFor(() -> {
+          try {
+            Thread.sleep(10_000);
+          } catch (InterruptedException ex) {
+            interrupted.countDown();
+          }
+        }));
+    assertEquals("test (not completed within 50.0ms)", e.failures().get(0).toString());
+    assertTrue(e.getCause().getMessage().contains(" interrupted at "));
+    assertTrue(Arrays.stream(e.getCause().getStackTrace()).anyMatch(frame -> frame.getMethodName().equals("sleep")));
+    assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+
+    assertEquals(Duration.ofMillis(50), Spec.defaultTimeout("PT0.05S"));
+    assertNull(Spec.defaultTimeout(null));
+    assertNull(Spec.defaultTimeout(""));
+    IllegalArgumentException invalid = assertThrows(IllegalArgumentException.class, () -> Spec.defaultTimeout("50ms"));
+    assertEquals("Invalid spectaculous.statement.timeout: 50ms (expected a positive ISO-8601 duration like PT30S)",
+        invalid.getMessage());
+    assertThrows(IllegalArgumentException.class, () -> Spec.defaultTimeout("PT0S"));
+    assertThrows(IllegalArgumentException.class, () -> Spec.describe("test").within(Duration.ZERO));
+  }
+
+  @Test
+  public void testComplexityExpect() {
+    Operation<int[], Long> sum = array -> {
+      long total = 0;
+      for (int i : array) {
+        total += i;
+      }
+      return total;
+    };
+    Operation<int[], Long> pairs = array -> {
+      long total = 0;
+      for (int i : array) {
+        for (int j : array) {
+          total += i ^ j;
+        }
+      }
+      return total;
+    };
+
+    Spec.describe(int[].class)
+        .expect(Complexity.linear().sizes(10_000, 320_000).tolerance(0.5)).given(int[]::new).from(sum)
+        .expect(Complexity.quadratic().sizes(100, 3_200)).given(int[]::new).from(pairs);
+
+    SpectacularException e = assertThrows(SpectacularException.class, () -> Spec.describe(int[].class)
+        .expect(Complexity.linear().sizes(100, 3_200)).given(int[]::new).from(pairs));
+    assertTrue(e.getMessage().contains("beyond O(n), tolerance 0.25"));
+
+    assertEquals("O(n log n)", Complexity.linearithmic().toString());
+    assertEquals("O(n^1.5)", Complexity.polynomial(1.5).toString());
+    assertThrows(IllegalArgumentException.class, () -> Complexity.linear().sizes(100, 100));
+  }
+
+  @Test
+  public void testLeakExpect() throws Throwable {
+    Path file = Files.createTempFile("spectaculous", ".txt");
+    Spec.describe("test")
+        .given(value)
+        .expect(Leak.none().iterations(20)).from(() -> Files.readAllBytes(file))
+        .expect(Leak.none().iterations(20)).from(() -> {
+          Thread thread = new Thread(() -> {
+          });
+          thread.start();
+          thread.join();
+        });
+
+    CountDownLatch release = new CountDownLatch(1);
+    List<AutoCloseable> resources = new ArrayList<>();
+    List<ByteBuffer> buffers = new ArrayList<>();
+    Leak leak = Leak.none().warmup(0).iterations(3).grace(Duration.ofMillis(50));
+    try {
+      SpectacularException e = assertThrows(SpectacularException.class, () -> Spec.describe("test")
+          .given(value)
+          .expect(leak).from(() -> {
+            Thread thread = new Thread(() -> {
+              try {
+                release.await();
+              } catch (InterruptedException ignored) {
+              }
+            }, "leaked");
+            thread.start();
+          }));
+      assertTrue(e.getMessage().contains("3 threads started (leaked, leaked, leaked)"));
+
+      e = assertThrows(SpectacularException.class, () -> Spec.describe("test")
+          .given(value)
+          .expect(leak).from(() -> resources.add(Files.newInputStream(file))));
+      assertTrue(e.getMessage().contains("file descriptors +3"));
+
+      e = assertThrows(SpectacularException.class, () -> Spec.describe("test")
+          .given(value)
+          .expect(leak).from(() -> buffers.add(ByteBuffer.allocateDirect(1024))));
+      assertTrue(e.getMessage().contains("direct memory +3.0 KiB"));
+
+      Spec.describe("test")
+          .given(value)
+          .expect(leak.directMemory(4096)).from(() -> buffers.add(ByteBuffer.allocateDirect(1024)));
+    } finally {
+      release.countDown();
+      for (AutoCloseable resource : resources) {
+        resource.close();
+      }
+    }
+  }
+
+  @Test
+  public void testSnapshot() throws Throwable {
+    Path directory = Files.createTempDirectory("spectaculous");
+    Snapshot snapshot = Snapshot.snapshot("payload.bin").directory(directory).chunk(7);
+    byte[] payload = new byte[1000];
+    for (int i = 0; i < payload.length; i++) {
+      payload[i] = (byte) i;
+    }
+    Path copy = Files.write(directory.resolve("copy.bin"), payload);
+
+    Spec.describe(byte[].class)
+        .given(payload)
+        .expect(snapshot).from(bytes -> bytes)
+        .expect(snapshot).from(ByteBuffer::wrap)
+        .expect(snapshot).from(bytes -> ByteBuffer.allocateDirect(bytes.length).put(bytes).flip())
+        .expect(snapshot).from(bytes -> copy)
+        .expect(snapshot).from(ByteArrayInputStream::new);
+    assertArrayEquals(payload, Files.readAllBytes(snapshot.file()));
+
+    byte[] changed = payload.clone();
+    changed[500] = 0;
+    SpectacularException e = assertThrows(SpectacularException.class, () -> Spec.describe("test")
+        .given(changed)
+        .expect(snapshot).from(o -> new ByteArrayInputStream((byte[]) o)));
+    assertTrue(e.getMessage().contains("differs from snapshot payload.bin at offset 500: expected 0xf4, actual 0x00"));
+
+    e = assertThrows(SpectacularException.class, () -> Spec.describe("test")
+        .given(Arrays.copyOf(payload, 10))
+        .expect(snapshot).from(o -> o));
+    assertTrue(e.getMessage().contains("at offset 10: actual ends, snapshot has 1000 bytes"));
+
+    e = assertThrows(SpectacularException.class, () -> Spec.describe("test")
+        .given(Arrays.copyOf(payload, 1001))
+        .expect(snapshot).from(o -> o));
+    assertTrue(e.getMessage().contains("at offset 1000: snapshot ends"));
+
+    assertThrows(SpectacularException.class, () -> Spec.describe("test")
+        .given(value)
+        .expect(snapshot).from(o -> o));
+
+    System.setProperty(Snapshot.RECORD_PROPERTY, "true");
+    try {
+      Spec.describe("test")
+          .given(changed)
+          .expect(snapshot).from(o -> o);
+    } finally {
+      System.clearProperty(Snapshot.RECORD_PROPERTY);
+    }
+    assertArrayEquals(changed, Files.readAllBytes(snapshot.file()));
+  }
+
+  @Test
+  public void testReporting() throws Throwable {
+    assertFalse(Reporting.ENABLED);
+
+    List<Event> events = new ArrayList<>();
+    assertThrows(SpectacularException.class, () -> Reporter.capture(events::add, () -> Spec.describe("reporting")
+        .given(value)
+        .because("It should pass")
+        .expect(value).from(o -> o)
+        .because("It should fail")
+        .expect(result).from(o -> o)));
+    assertEquals(2, events.size());
+    assertEquals("It should pass", events.get(0).reason());
+    assertEquals(Event.Kind.EXPECT, events.get(0).kind());
+    assertTrue(events.get(0).passed());
+    assertFalse(events.get(1).passed());
+    assertEquals("reporting: It should fail", events.get(1).failure().scenario() + ": " + events.get(1).failure().reason());
+
+    List<Event> delivered = new ArrayList<>();
+    AtomicInteger failures = new AtomicInteger();
+    List<Reporter> reporters = new ArrayList<>(Arrays.<Reporter>asList(event -> {
+      failures.incrementAndGet();
+      throw new IllegalStateException();
+    }, event -> {
+      failures.incrementAndGet();
+      throw new AssertionError();
+    }, delivered::add));
+    Reporting.deliver(reporters, events.get(0));
+    Reporting.deliver(reporters, events.get(1));
+    assertEquals(2, failures.get());
+    assertEquals(1, reporters.size());
+    assertEquals(events, delivered);
+
+    Reporting.Ring ring = new Reporting.Ring(2);
+    assertTrue(ring.offer("ring", "first", Event.Kind.EXPECT, null, 1));
+    assertTrue(ring.offer("ring", "second", Event.Kind.EXPECT, null, 2));
+    assertFalse(ring.offer("ring", "dropped", Event.Kind.EXPECT, null, 3));
+    assertEquals("first", ring.poll().reason());
+    assertTrue(ring.offer("ring", "third", Event.Kind.EXPECT, null, 4));
+    assertEquals("second", ring.poll().reason());
+    assertEquals("third", ring.poll().reason());
+    assertNull(ring.poll());
+    assertTrue(ring.isEmpty());
+
+    Path file = Files.createTempFile("reporting", ".txt");
+    System.setProperty(Reporting.JSON_LINES_PROPERTY, file.resolve("events.jsonl").toString());
+    System.setProperty(Reporting.JUNIT_XML_PROPERTY, file.resolveSibling("junit.xml").toString());
+    try {
+      List<Reporter> loaded = Reporting.reporters();
+      assertEquals(1, loaded.size());
+      assertTrue(loaded.get(0) instanceof JUnitXmlReporter);
+    } finally {
+      System.clearProperty(Reporting.JSON_LINES_PROPERTY);
+      System.clearProperty(Reporting.JUNIT_XML_PROPERTY);
+    }
+
+    List<Event> captured = new ArrayList<>();
+    Reporter.capture(captured::add, () -> Spec.describe("capture")
+        .given(value)
+        .then(targetedAction).willSucceed()
+        .waitFor(action));
+    assertEquals(2, captured.size());
+    assertEquals(Event.Kind.THEN, captured.get(0).kind());
+    assertEquals(Event.Kind.WAIT, captured.get(1).kind());
+
+    Path directory = Files.createTempDirectory("spectaculous");
+    JsonLinesReporter jsonLines = new JsonLinesReporter(directory.resolve("events.jsonl"));
+    JUnitXmlReporter junitXml = new JUnitXmlReporter(directory.resolve("junit.xml"));
+    for (Event event : events) {
+      jsonLines.report(event);
+      junitXml.report(event);
+    }
+    jsonLines.close();
+    junitXml.close();
+
+    List<String> lines = Files.readAllLines(directory.resolve("events.jsonl"));
+    assertEquals(2, lines.size());
+    assertTrue(lines.get(0).startsWith("{\"scenario\":\"reporting\",\"reason\":\"It should pass\",\"kind\":\"EXPECT\",\"passed\":true,\"nanos\":"));
+    assertTrue(lines.get(1).endsWith(",\"failure\":\"reporting: It should fail (expected: " + result + ", actual: " + value + ")\"}"));
+
+    String xml = Files.readString(directory.resolve("junit.xml"));
+    assertTrue(xml.contains("<testsuite name=\"reporting\" tests=\"2\" failures=\"1\""));
+    assertTrue(xml.contains("<testcase classname=\"reporting\" name=\"2. It should fail\""));
+  }
+
+  @Test
+  public void testHistogram() {
+    Histogram histogram = new Histogram();
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000L);
+    }
+
+    assertEquals(1000, histogram.count());
+    assertEquals(1000, histogram.min());
+    assertEquals(1_000_000, histogram.max());
+    assertEquals(1_000_000, histogram.percentile(100));
+    assertTrue(Math.abs(histogram.percentile(50) - 500_000) <= 500_000 / 32);
+    assertTrue(Math.abs(histogram.percentile(99) - 990_000) <= 990_000 / 32);
+  }
+
+  @Test
+  public void testStackless() throws Exception {
+    SpectacularException e = assertThrows(SpectacularException.class, () -> {
+      Spec.describe("Something")
+          .stackless()
+          .given(value)
+          .because("is wrong")
+          .then(throwException()).willSucceed();
+    });
+    assertEquals(0, e.getStackTrace().length);
+    assertEquals("Something: is wrong", e.getMessage());
+    assertEquals(Exception.class, e.getCause().getClass());
+
+    e = assertThrows(SpectacularException.class, () -> {
+      Spec.describe("Something")
+          .given(value)
+          .then(throwException()).willSucceed();
+    });
+    assertTrue(e.getStackTrace().length > 0);
+
+    e = assertThrows(SpectacularException.class, () -> {
+      Spec.describe("Something")
+          .stackless()
+          .given(value)
+          .expect(value).from(o -> new Object());
+    });
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+      output.writeObject(e);
+    }
+    SpectacularException deserialized;
+    try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      deserialized = (SpectacularException) input.readObject();
+    }
+    assertEquals(e.getMessage(), deserialized.getMessage());
+    assertTrue(deserialized.failures().isEmpty());
+  }
+
+  @Test
+  public void testEventually() throws Throwable {
+    AtomicInteger attempts = new AtomicInteger();
+
+    Spec.describe("test")
+        .given(supplier)
+        .eventually(Polling.upTo(Duration.ofSeconds(5)).every(Duration.ofMillis(1)).backoff(2).jitter(0.5))
+        .expect(true).from(o -> attempts.incrementAndGet() >= 3)
+        .then(targetedAction).willSucceed();
+
+    assertEquals(3, attempts.get());
+    verify(supplier, times(4)).get();
+
+    long start = System.nanoTime();
+    assertThrows(SpectacularException.class, () -> {
+      Spec.describe("test")
+          .given(value)
+          .eventually(Polling.upTo(Duration.ofMillis(50)))
+          .expect(value).from(operation);
+    });
+    assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos());
+    verify(operation, atLeast(2)).execute(value);
+
+    assertThrows(SpectacularException.class, () -> {
+      Spec.describe("test")
+          .given(value)
+          .eventually(Polling.upTo(Duration.ofSeconds(5)).every(Duration.ofMillis(1)))
+          .then(action).willSucceed()
+          .expect(value).from(operation);
+    });
+  }
+
+  @Test
+  public void testStress() throws Throwable {
+    AtomicInteger counter = new AtomicInteger();
+
+    Spec.describe(AtomicInteger.class)
+        .given(counter)
+        .then(Stress.<AtomicInteger>mix()
+            .with(3, AtomicInteger::incrementAndGet)
+            .with(1, AtomicInteger::decrementAndGet)
+            .threads(4)
+            .iterations(100)
+            .seed(42)).willSucceed()
+        .expect(true).from(c -> c.get() >= -400 && c.get() <= 400)
+        .then(Stress.of(targetedAction).threads(2).iterations(10)).willSucceed();
+
+    verify(targetedAction, times(20)).run(counter);
+
+    SpectacularException e = assertThrows(SpectacularException.class, () -> {
+      Spec.describe("test")
+          .given(value)
+          .then(Stress.of(o -> {
+            throw new IllegalStateException();
+          }).seed(7)).willSucceed();
+    });
+    assertTrue(e.getMessage().startsWith("test (seed=7, "));
+    assertEquals(IllegalStateException.class, e.getCause().getClass());
+
+    Spec.describe("test")
+        .given(value)
+        .then(Stress.of(o -> {
+          throw new IllegalStateException();
+        })).willThrow(IllegalStateException.class);
+  }
+
   @Test
   public void testWaitFor() {
 
@@ -267,4 +1214,10 @@ public class Backstage {
     return () -> {throw new Exception();};
   }
 
+  static class Rejected extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+  }
+
 }